@@ -121,7 +121,7 @@ public class AuthService {
                 .passwordHash(tempUser.getPassword())
                 .role(Role.USER)
                 .build();
-        userRepository.save(user);
+        userRepository.insert(user);
         log.debug("Created user from temporary: {}", user);
         tempUserRepository.deleteById(tempUser.getId());
         log.debug("Deleted temporary user: {}", tempUser);
@@ -136,7 +136,7 @@ public class AuthService {
                 .passwordHash(passwordEncoder.encode(request.getPassword()))
                 .role(Role.USER)
                 .build();
-        userRepository.save(user);
+        userRepository.insert(user);
         var jwtToken = jwtService.generateToken(user);
         var refreshToken = jwtService.generateRefreshToken(user);
         return AuthenticationResponse.builder()
@@ -157,7 +157,9 @@ public class AuthService {
         if (userEmail != null) {
             var user = this.userRepository.findByMail(userEmail)
                     .orElseThrow();
-            if (jwtService.isTokenValid(refreshToken, user)) {
+            // A revoked refresh token can't be traded for a new access token
+            if (jwtService.isTokenValid(refreshToken, user)
+                    && jwtService.extractTokenVersion(jwtService.extractAllClaims(refreshToken)) == user.getTokenVersion()) {
                 var accessToken = jwtService.generateToken(user);
                 var authResponse = AuthenticationResponse.builder()
                         .accessToken(accessToken)
@@ -0,0 +1,25 @@
+package com.example.recipe.auth;
+
+import com.example.recipe.entity.User;
+import com.example.recipe.model.Role;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.security.Principal;
+import java.util.Collection;
+
+/* Principal of an authenticated request, built from the JWT claims instead of the whole User document */
+public record AuthenticatedUser(String id, String mail, Role role) implements Principal {
+
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getMail(), user.getRole());
+    }
+
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return (role != null ? role : Role.USER).getAuthorities();
+    }
+
+    @Override
+    public String getName() {
+        return mail;
+    }
+}
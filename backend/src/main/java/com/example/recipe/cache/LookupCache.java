@@ -0,0 +1,103 @@
+package com.example.recipe.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+ * Read-through cache for small reference tables (ingredients, categories).
+ * The whole table is loaded at startup, as long as it fits in maxEntries the cache is "complete"
+ * and findAll() never goes to the database. Writes have to go through put/evict to keep it in sync.
+ */
+public class LookupCache<T> {
+
+    private final Map<String, T> entries = new ConcurrentHashMap<>();
+    private final Function<T, String> idGetter;
+    private final int maxEntries;
+    private volatile boolean complete = false;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LookupCache(String name, Function<T, String> idGetter, int maxEntries, MeterRegistry meterRegistry) {
+        this.idGetter = idGetter;
+        this.maxEntries = maxEntries;
+
+        FunctionCounter.builder("lookup.cache.hits", hits, LongAdder::sum)
+                .tag("cache", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("lookup.cache.misses", misses, LongAdder::sum)
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("lookup.cache.size", entries, Map::size)
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    public void warmUp(Collection<T> all) {
+        entries.clear();
+        all.stream().limit(maxEntries).forEach(this::put);
+        complete = all.size() <= maxEntries;
+    }
+
+    public Optional<T> get(String id, Function<String, Optional<T>> loader) {
+        T cached = entries.get(id);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        Optional<T> loaded = loader.apply(id);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    public List<T> getAll(Collection<String> ids, Function<Collection<String>, List<T>> loader) {
+        List<T> found = new ArrayList<>(ids.size());
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            T cached = entries.get(id);
+            if (cached != null) found.add(cached);
+            else missing.add(id);
+        }
+        hits.add(found.size());
+        misses.add(missing.size());
+
+        // Only the ids that are not cached are fetched, in a single query
+        if (!missing.isEmpty()) {
+            List<T> loaded = loader.apply(missing);
+            loaded.forEach(this::put);
+            found.addAll(loaded);
+        }
+        return found;
+    }
+
+    public List<T> findAll(Supplier<List<T>> loader) {
+        if (complete) {
+            hits.increment();
+            return new ArrayList<>(entries.values());
+        }
+        misses.increment();
+        return loader.get();
+    }
+
+    public void put(T value) {
+        String id = idGetter.apply(value);
+        // Once the bound is reached new entries are served from the database instead of growing the cache
+        if (entries.size() >= maxEntries && !entries.containsKey(id)) {
+            complete = false;
+            return;
+        }
+        entries.put(id, value);
+    }
+
+    public void evict(String id) {
+        entries.remove(id);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.recipe.cache;
+
+import com.example.recipe.entity.MealRule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/* All the meal rules of a user keyed by tenantId, so expanding them costs no query on calendar reads.
+   Writes evict the local entry, a change made on another instance is seen after ttl-seconds at most */
+@Component
+public class MealRuleCache extends SingleFlightCache<List<MealRule>> {
+
+    public MealRuleCache(MeterRegistry meterRegistry,
+                         @Value("${application.cache.meal-rules.max-entries}") int maxEntries,
+                         @Value("${application.cache.meal-rules.ttl-seconds}") long ttlSeconds) {
+        super("meal-rules", maxEntries, Duration.ofSeconds(ttlSeconds), meterRegistry);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.recipe.cache;
+
+import com.example.recipe.entity.Recipe;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/* Recipes by id, the cached entity carries isPublic and tenantId so access checks need no query.
+   Writes evict the local entry, a change made on another instance is seen after ttl-seconds at most */
+@Component
+public class RecipeCache extends SingleFlightCache<Recipe> {
+
+    public RecipeCache(MeterRegistry meterRegistry,
+                       @Value("${application.cache.recipes.max-entries}") int maxEntries,
+                       @Value("${application.cache.recipes.ttl-seconds}") long ttlSeconds) {
+        super("recipes", maxEntries, Duration.ofSeconds(ttlSeconds), meterRegistry);
+    }
+}
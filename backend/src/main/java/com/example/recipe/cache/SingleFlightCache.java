@@ -0,0 +1,161 @@
+package com.example.recipe.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/*
+ * Bounded cache keyed by id where concurrent misses for the same id share a single load :
+ * the first caller runs the loader, the others wait on its future instead of querying mongo too.
+ * Absent values are not cached. Entries live in an access ordered map, the least recently used one is
+ * dropped once maxEntries is reached. With a ttl, a value loaded longer ago than ttl is loaded again.
+ * The lock only guards the map, loaders always run outside of it.
+ */
+public class SingleFlightCache<T> {
+
+    private static final class Entry<T> {
+        private final CompletableFuture<Optional<T>> future = new CompletableFuture<>();
+        private volatile long loadedAt;
+    }
+
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Object lock = new Object();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SingleFlightCache(String name, int maxEntries, MeterRegistry meterRegistry) {
+        this(name, maxEntries, null, meterRegistry);
+    }
+
+    // A null ttl keeps the values until they are evicted or pushed out
+    public SingleFlightCache(String name, int maxEntries, Duration ttl, MeterRegistry meterRegistry) {
+        this(name, maxEntries, ttl, meterRegistry, System::nanoTime);
+    }
+
+    SingleFlightCache(String name, int maxEntries, Duration ttl, MeterRegistry meterRegistry, LongSupplier ticker) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl == null ? Long.MAX_VALUE : ttl.toNanos();
+        this.ticker = ticker;
+
+        FunctionCounter.builder("entity.cache.hits", hits, LongAdder::sum)
+                .tag("cache", name)
+                .register(meterRegistry);
+        FunctionCounter.builder("entity.cache.misses", misses, LongAdder::sum)
+                .tag("cache", name)
+                .register(meterRegistry);
+        Gauge.builder("entity.cache.size", this, SingleFlightCache::size)
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    public Optional<T> get(String id, Function<String, Optional<T>> loader) {
+        Entry<T> entry;
+        boolean loading = false;
+        synchronized (lock) {
+            entry = entries.get(id);
+            if (entry != null && isExpired(entry)) {
+                entries.remove(id);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry<>();
+                entries.put(id, entry);
+                loading = true;
+                trim();
+            }
+        }
+
+        if (!loading) {
+            // Either loaded already or someone else is loading this id right now
+            hits.increment();
+            return await(entry.future);
+        }
+
+        misses.increment();
+        try {
+            Optional<T> loaded = loader.apply(id);
+            entry.loadedAt = ticker.getAsLong();
+            entry.future.complete(loaded);
+            if (loaded.isEmpty()) remove(id, entry);
+            return loaded;
+        } catch (RuntimeException e) {
+            remove(id, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Only an id already loaded with a value is returned, nothing is loaded and pending loads aren't waited for
+    public Optional<T> getIfLoaded(String id) {
+        Entry<T> entry;
+        synchronized (lock) {
+            entry = entries.get(id);
+        }
+        if (entry == null || !entry.future.isDone() || entry.future.isCompletedExceptionally() || isExpired(entry)) {
+            return Optional.empty();
+        }
+        Optional<T> value = entry.future.join();
+        if (value.isPresent()) hits.increment();
+        return value;
+    }
+
+    public boolean containsLoaded(String id) {
+        return getIfLoaded(id).isPresent();
+    }
+
+    // An eviction during a load drops the in-flight entry, so the possibly stale result is never kept
+    public void evict(String id) {
+        synchronized (lock) {
+            entries.remove(id);
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    private boolean isExpired(Entry<T> entry) {
+        return entry.future.isDone() && ticker.getAsLong() - entry.loadedAt > ttlNanos;
+    }
+
+    // Only removes the entry if it is still the one this load created
+    private void remove(String id, Entry<T> entry) {
+        synchronized (lock) {
+            entries.remove(id, entry);
+        }
+    }
+
+    // Called under the lock, the iteration order is least recently used first
+    private void trim() {
+        Iterator<Entry<T>> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private Optional<T> await(CompletableFuture<Optional<T>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.recipe.cache;
+
+import com.example.recipe.model.Role;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+ * Token version and role of each user, read by the JWT filter to reject revoked tokens and outdated roles.
+ * Entries are reloaded after ttl-seconds, a change made on another instance is seen at most that late.
+ */
+@Component
+public class UserTokenStateCache extends SingleFlightCache<UserTokenStateCache.TokenState> {
+
+    public record TokenState(int version, Role role) {
+    }
+
+    public UserTokenStateCache(MeterRegistry meterRegistry,
+                               @Value("${application.cache.user-tokens.max-entries}") int maxEntries,
+                               @Value("${application.cache.user-tokens.ttl-seconds}") long ttlSeconds) {
+        super("user-tokens", maxEntries, Duration.ofSeconds(ttlSeconds), meterRegistry);
+    }
+}
@@ -1,5 +1,11 @@
 package com.example.recipe.config;
 
+import com.example.recipe.auth.AuthenticatedUser;
+import com.example.recipe.cache.UserTokenStateCache;
+import com.example.recipe.entity.User;
+import com.example.recipe.model.Role;
+import com.example.recipe.repository.UserRepository;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -16,6 +22,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Objects;
+import java.util.Optional;
 
 
 @Component
@@ -25,6 +33,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final UserTokenStateCache userTokenStateCache;
+    private final UserRepository userRepository;
 
     @Override
     protected void doFilterInternal(
@@ -46,22 +56,44 @@ public class JwtAuthFilter extends OncePerRequestFilter {
             return;
         }
         jwt = authorizationHeader.substring(7);
-        userEmail = jwtService.extractUsername(jwt);
+        // Parsing checks the signature and the expiration
+        Claims claims = jwtService.extractAllClaims(jwt);
+        userEmail = claims.getSubject();
         var auth = SecurityContextHolder.getContext().getAuthentication();
         if (userEmail != null && auth == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-            if(jwtService.isTokenValid(jwt,userDetails)){
+            // The principal comes from the claims, only the token version and role are checked, through the cache
+            Optional<AuthenticatedUser> claimed = jwtService.toPrincipal(claims);
+            Optional<AuthenticatedUser> principal = claimed.filter(user -> isTokenCurrent(user, claims));
+
+            // Tokens issued before the claims existed still go through the user document
+            if (claimed.isEmpty()) {
+                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+                if (jwtService.isTokenValid(jwt, userDetails) && userDetails instanceof User user
+                        && user.getTokenVersion() == 0) {
+                    principal = Optional.of(AuthenticatedUser.of(user));
+                }
+            }
+
+            principal.ifPresent(user -> {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities() // credentials null because jwt is stateless
+                        user, null, user.getAuthorities() // credentials null because jwt is stateless
                 );
                 authToken.setDetails(
                         new WebAuthenticationDetailsSource().buildDetails(request)
                 );
                 SecurityContextHolder.getContext().setAuthentication(authToken);
-
-            }
+            });
         }
         filterChain.doFilter(request, response);
 
     }
+
+    // Rejects the tokens revoked by a version bump, of deleted users, or carrying a role that changed since
+    private boolean isTokenCurrent(AuthenticatedUser user, Claims claims) {
+        return userTokenStateCache.get(user.id(), id -> userRepository.findTokenStateById(id)
+                        .map(found -> new UserTokenStateCache.TokenState(found.getTokenVersion(), found.getRole())))
+                .filter(state -> state.version() == jwtService.extractTokenVersion(claims))
+                .filter(state -> Objects.equals(state.role() != null ? state.role() : Role.USER, user.role()))
+                .isPresent();
+    }
 }
@@ -1,5 +1,8 @@
 package com.example.recipe.config;
 
+import com.example.recipe.auth.AuthenticatedUser;
+import com.example.recipe.entity.User;
+import com.example.recipe.model.Role;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -14,11 +17,17 @@ import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
 
+    // Enough to build the principal without reading the user, see JwtAuthFilter
+    public static final String USER_ID_CLAIM = "uid";
+    public static final String ROLE_CLAIM = "role";
+    public static final String TOKEN_VERSION_CLAIM = "ver";
+
     @Value("${application.security.jwt.secret-key}")
     private String secretKey;
 
@@ -44,9 +53,15 @@ public class JwtService {
     }
 
     public String buildToken(Map<String, Object> extraClaims, UserDetails userDetails, long expiration) {
+        Map<String, Object> claims = new HashMap<>(extraClaims);
+        if (userDetails instanceof User user) {
+            claims.put(USER_ID_CLAIM, user.getId());
+            claims.put(ROLE_CLAIM, user.getRole() != null ? user.getRole().name() : Role.USER.name());
+            claims.put(TOKEN_VERSION_CLAIM, user.getTokenVersion());
+        }
         return Jwts
                 .builder()
-                .setClaims(extraClaims)
+                .setClaims(claims)
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration))
@@ -76,6 +91,20 @@ public class JwtService {
                 .getBody();
     }
 
+    // Empty for the tokens issued before the user id and role were part of the claims
+    public Optional<AuthenticatedUser> toPrincipal(Claims claims) {
+        String userId = claims.get(USER_ID_CLAIM, String.class);
+        String role = claims.get(ROLE_CLAIM, String.class);
+        if (userId == null || role == null) return Optional.empty();
+        return Optional.of(new AuthenticatedUser(userId, claims.getSubject(), Role.valueOf(role)));
+    }
+
+    // 0 when absent, which is also the version of a user whose tokens were never revoked
+    public int extractTokenVersion(Claims claims) {
+        Integer version = claims.get(TOKEN_VERSION_CLAIM, Integer.class);
+        return version != null ? version : 0;
+    }
+
     public boolean isTokenValid(String token, UserDetails userDetails) {
         final String username = extractUsername(token);
         return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
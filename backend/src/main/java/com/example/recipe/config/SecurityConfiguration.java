@@ -1,5 +1,6 @@
 package com.example.recipe.config;
 
+import com.example.recipe.dto.CursorPage;
 import com.example.recipe.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
@@ -75,6 +76,7 @@ public class SecurityConfiguration {
         config.setAllowedOriginPatterns(List.of("*")); // Use origin * safely with no credentials
         config.setAllowedMethods(List.of("GET", "POST", "PUT","PATCH", "DELETE", "OPTIONS"));
         config.setAllowedHeaders(List.of("*"));
+        config.setExposedHeaders(List.of(CursorPage.NEXT_CURSOR_HEADER)); // keyset pagination cursor
         config.setAllowCredentials(false);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -1,8 +1,12 @@
 package com.example.recipe.controller;
 
+import com.example.recipe.dto.CalendarDayDto;
+import com.example.recipe.dto.GeneratedMealPlanDto;
+import com.example.recipe.dto.MealPlanGenerationDto;
 import com.example.recipe.dto.requests.CalendarRequest;
 import com.example.recipe.entity.CalendarItem;
 import com.example.recipe.service.CalendarService;
+import com.example.recipe.service.MealPlanService;
 import jakarta.validation.Valid;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -10,18 +14,41 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/v1/users/{tenantId}/calendar")
 public class CalendarController {
 
     private final CalendarService calendarService;
+    private final MealPlanService mealPlanService;
 
-    public CalendarController(CalendarService calendarService) {
+    public CalendarController(CalendarService calendarService, MealPlanService mealPlanService) {
         this.calendarService = calendarService;
+        this.mealPlanService = mealPlanService;
     }
 
 
+    // Week or month view in one request, both bounds included
+    @GetMapping
+    public ResponseEntity<List<CalendarItem>> getCalendarItems(
+            @PathVariable("tenantId") String tenantId,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam LocalDate from,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam LocalDate to) {
+
+        return ResponseEntity.ok(calendarService.getCalendarItems(tenantId, from, to));
+    }
+
+    // Same range with the compact recipes inlined in the meal events, no follow-up recipe requests needed
+    @GetMapping("/expanded")
+    public ResponseEntity<List<CalendarDayDto>> getExpandedCalendar(
+            @PathVariable("tenantId") String tenantId,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam LocalDate from,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam LocalDate to) {
+
+        return ResponseEntity.ok(calendarService.getExpandedCalendar(tenantId, from, to));
+    }
+
     @GetMapping("/{date}")
     public ResponseEntity<CalendarItem> getCalendarItem(
             @PathVariable("tenantId") String tenantId,
@@ -67,6 +94,26 @@ public class CalendarController {
     }
 
 
+    // A week of day updates in one request and one bulk write
+    @PutMapping("/batch")
+    public ResponseEntity<List<CalendarItem>> appendMealsToCalendarItems(
+            @PathVariable String tenantId,
+            @RequestBody @Valid List<CalendarRequest> updateRequests) {
+
+        return ResponseEntity.ok(calendarService.mergeMealPlansBatch(tenantId, updateRequests));
+    }
+
+
+    // Fills the empty meals of the range, answered within the generator time budget
+    @PostMapping("/generate")
+    public ResponseEntity<GeneratedMealPlanDto> generateMealPlan(
+            @PathVariable String tenantId,
+            @RequestBody MealPlanGenerationDto generationRequest) {
+
+        return ResponseEntity.ok(mealPlanService.generate(tenantId, generationRequest));
+    }
+
+
     @DeleteMapping
     public ResponseEntity<?> deleteMealEvent(
             @PathVariable String tenantId,
@@ -1,7 +1,7 @@
 package com.example.recipe.controller;
 
 import com.example.recipe.entity.lookup.Category;
-import com.example.recipe.repository.CategoryRepository;
+import com.example.recipe.service.CategoryService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -11,31 +11,31 @@ import java.util.Optional;
 @RestController
 @RequestMapping("/api/v1/categories")
 public class CategoryController {
-    private final CategoryRepository categoryRepository;
+    private final CategoryService categoryService;
 
-    public CategoryController(CategoryRepository categoryRepository) {
-        this.categoryRepository = categoryRepository;
+    public CategoryController(CategoryService categoryService) {
+        this.categoryService = categoryService;
     }
 
     @GetMapping
     public List<Category> getAllIngredients() {
-        return categoryRepository.findAll();
+        return categoryService.findAll();
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<Category> getIngredientById(@PathVariable String id) {
-        Optional<Category> category = categoryRepository.findById(id);
+        Optional<Category> category = categoryService.findById(id);
         return category.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PostMapping
     public Category addIngredient(@RequestBody Category category) {
-        return categoryRepository.save(category);
+        return categoryService.save(category);
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteIngredient(@PathVariable String id) {
-        categoryRepository.deleteById(id);
+        categoryService.deleteById(id);
         return ResponseEntity.noContent().build();
     }
 }
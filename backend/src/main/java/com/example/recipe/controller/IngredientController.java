@@ -6,7 +6,9 @@ import com.example.recipe.entity.lookup.Ingredient;
 import com.example.recipe.exception.DatabaseException;
 import com.example.recipe.exception.GenericException;
 import com.example.recipe.mapper.IngredientMapper;
-import com.example.recipe.repository.IngredientRepository;
+import com.example.recipe.model.IngredientType;
+import com.example.recipe.service.IngredientService;
+import com.example.recipe.utils.EnumUtils;
 import com.example.recipe.utils.FileStorageUtils;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,28 +25,45 @@ import java.util.stream.Collectors;
 @RestController
 @RequestMapping("/api/v1/ingredients")
 public class IngredientController {
-    private final IngredientRepository ingredientRepository;
+    private static final int DEFAULT_SUGGEST_LIMIT = 10;
+
+    private final IngredientService ingredientService;
     private final IngredientMapper ingredientMapper;
 
-    public IngredientController(IngredientRepository ingredientRepository, IngredientMapper ingredientMapper) {
-        this.ingredientRepository = ingredientRepository;
+    public IngredientController(IngredientService ingredientService, IngredientMapper ingredientMapper) {
+        this.ingredientService = ingredientService;
         this.ingredientMapper = ingredientMapper;
     }
 
     @GetMapping
     public List<Ingredient> getAllIngredients() {
-        return ingredientRepository.findAll();
+        return ingredientService.findAll();
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<IngredientDto>> suggestIngredients(
+            @RequestParam String prefix,
+            @RequestParam Optional<String> type,
+            @RequestParam Optional<Integer> limit) {
+        Optional<IngredientType> typeEnum = EnumUtils.parse(type, IngredientType.class);
+        int max = limit.filter(l -> l > 0).orElse(DEFAULT_SUGGEST_LIMIT);
+
+        List<IngredientDto> suggestions = ingredientService.suggest(prefix, typeEnum, max)
+                .stream()
+                .map(ingredientMapper::toDto)
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(suggestions);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<Ingredient> getIngredientById(@PathVariable String id) {
-        Optional<Ingredient> Ingredient = ingredientRepository.findById(id);
+        Optional<Ingredient> Ingredient = ingredientService.findById(id);
         return Ingredient.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @PostMapping
     public Ingredient addIngredient(@RequestBody Ingredient ingredient) {
-        return ingredientRepository.save(ingredient);
+        return ingredientService.save(ingredient);
     }
 
     @PostMapping(path = "/with-cover-image",
@@ -64,7 +83,7 @@ public class IngredientController {
 
             // Save the ingredient with the image URL
             Ingredient i = ingredientMapper.toEntity(ingredientDto);
-            ingredientRepository.save(i);
+            ingredientService.save(i);
             return Boolean.TRUE;
         }catch (Exception e){
             e.printStackTrace();
@@ -75,7 +94,7 @@ public class IngredientController {
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteIngredient(@PathVariable String id) {
-        ingredientRepository.deleteById(id);
+        ingredientService.deleteById(id);
         return ResponseEntity.noContent().build();
     }
 
@@ -83,8 +102,8 @@ public class IngredientController {
     @GetMapping("/batch")
     public ResponseEntity<List<IngredientDto>> getRecipeIngredientsById(@RequestBody List<String> ingredientsIds) {
         try {
-            List<IngredientDto> ingredients = ingredientRepository
-                    .findAllById(ingredientsIds)
+            List<IngredientDto> ingredients = ingredientService
+                    .findAllByIds(ingredientsIds)
                     .stream()
                     .map(ingredientMapper::toDto)
                     .collect(Collectors.toList());
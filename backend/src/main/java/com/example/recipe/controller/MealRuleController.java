@@ -0,0 +1,50 @@
+package com.example.recipe.controller;
+
+import com.example.recipe.entity.MealRule;
+import com.example.recipe.service.MealRuleService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/users/{tenantId}/calendar/rules")
+public class MealRuleController {
+
+    private final MealRuleService mealRuleService;
+
+    public MealRuleController(MealRuleService mealRuleService) {
+        this.mealRuleService = mealRuleService;
+    }
+
+
+    @GetMapping
+    public ResponseEntity<List<MealRule>> getRules(@PathVariable String tenantId) {
+        return ResponseEntity.ok(mealRuleService.getRules(tenantId));
+    }
+
+    // e.g. {"mealType":"BREAKFAST","recipeId":"...","frequency":"WEEKLY","daysOfWeek":["MONDAY","FRIDAY"],"start":"2025-01-06"}
+    @PostMapping
+    public ResponseEntity<MealRule> createRule(@PathVariable String tenantId, @RequestBody MealRule rule) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(mealRuleService.createRule(tenantId, rule));
+    }
+
+    @DeleteMapping("/{ruleId}")
+    public ResponseEntity<?> deleteRule(@PathVariable String tenantId, @PathVariable String ruleId) {
+        mealRuleService.deleteRule(tenantId, ruleId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Skip a single occurrence of the rule
+    @PostMapping("/{ruleId}/exceptions")
+    public ResponseEntity<MealRule> addException(
+            @PathVariable String tenantId,
+            @PathVariable String ruleId,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam LocalDate date) {
+
+        return ResponseEntity.ok(mealRuleService.addException(tenantId, ruleId, date));
+    }
+}
@@ -11,6 +11,8 @@ import com.example.recipe.model.MealType;
 import com.example.recipe.model.RelativePrice;
 import com.example.recipe.service.RecipeService;
 import com.example.recipe.service.UserService;
+import com.example.recipe.utils.CursorUtils;
+import com.example.recipe.utils.EnumUtils;
 import com.example.recipe.utils.FileStorageUtils;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +22,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
@@ -30,15 +33,17 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RecipeController {
 
+    // Clients sending "Accept: application/x-ndjson" get the listings streamed one recipe per line
+    private static final String NDJSON = "application/x-ndjson";
+
     private final RecipeService recipeService;
     private final UserService userService;
 
     @PostMapping("/ideas")
-    public ResponseEntity<List<String>> getIdeas(@Valid @RequestBody List<String> ingredients) {
-        /* SHOULD EITHER RETURN A LIST OF RECIPE_IDS OR A LIST OF SUGGESTIONS (recipe names that are not in DB) */
-        /*List<String> ingredientsList = List.of("c6a0da55-276e-4b0e-9ed9-18a3009b6ce5");*/
-        List<String> ingredientsList = List.of("Tomates mozza","Caviar");
-        return ResponseEntity.ok(ingredientsList);
+    public ResponseEntity<List<String>> getIdeas(@Valid @RequestBody List<String> ingredients, @RequestParam Optional<Integer> limit) {
+        // Ingredients can be given by id or by name, the answer is a list of recipe ids ranked by ingredient coverage
+        List<String> recipesIds = recipeService.getIdeas(ingredients, limit);
+        return ResponseEntity.ok(recipesIds);
     }
 
     @GetMapping("/filters")
@@ -46,40 +51,52 @@ public class RecipeController {
             @RequestParam Optional<String> relativePrice,
             @RequestParam Optional<String> foodOrigin,
             @RequestParam Optional<String> mealType,
-            @RequestParam Optional<Integer> limit) {
-        Optional<RelativePrice> priceEnum = relativePrice.flatMap(value -> {
-            try {
-                return Optional.of(RelativePrice.valueOf(value.toUpperCase()));
-            } catch (IllegalArgumentException e) {
-                return Optional.empty();
-            }
-        });
-
-        Optional<FoodOrigin> originEnum = foodOrigin.flatMap(value -> {
-            try {
-                return Optional.of(FoodOrigin.valueOf(value.toUpperCase()));
-            } catch (IllegalArgumentException e) {
-                return Optional.empty();
-            }
-        });
-
-        Optional<MealType> mealEnum = mealType.flatMap(value -> {
-            try {
-                return Optional.of(MealType.valueOf(value.toUpperCase()));
-            } catch (IllegalArgumentException e) {
-                return Optional.empty();
-            }
-        });
+            @RequestParam Optional<Integer> limit,
+            @RequestParam Optional<String> cursor,
+            @RequestParam Optional<Integer> size) {
+        Optional<RelativePrice> priceEnum = EnumUtils.parse(relativePrice, RelativePrice.class);
+        Optional<FoodOrigin> originEnum = EnumUtils.parse(foodOrigin, FoodOrigin.class);
+        Optional<MealType> mealEnum = EnumUtils.parse(mealType, MealType.class);
+        if (CursorUtils.isPaged(cursor, size)) {
+            return recipeService.getAllWithFiltersPage(priceEnum, originEnum, mealEnum, cursor, size.or(() -> limit)).toResponseEntity();
+        }
         List<RecipeDto> recipes = recipeService.getAllWithFilters(priceEnum, originEnum, mealEnum, limit);
         return ResponseEntity.ok(recipes);
     }
 
     @GetMapping
-    public ResponseEntity<List<RecipeDto>> getAllRecipes() {
+    public ResponseEntity<List<RecipeDto>> getAllRecipes(
+            @RequestParam Optional<String> cursor,
+            @RequestParam Optional<Integer> size) {
+        if (CursorUtils.isPaged(cursor, size)) {
+            return recipeService.getAllPage(cursor, size).toResponseEntity();
+        }
         List<RecipeDto> recipes = recipeService.getAll();
         return ResponseEntity.ok(recipes);
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<List<RecipeDto>> searchRecipes(
+            @RequestParam String q,
+            @RequestParam Optional<String> relativePrice,
+            @RequestParam Optional<String> foodOrigin,
+            @RequestParam Optional<String> mealType,
+            @RequestParam Optional<Integer> limit) {
+        List<RecipeDto> recipes = recipeService.search(
+                q,
+                EnumUtils.parse(relativePrice, RelativePrice.class),
+                EnumUtils.parse(foodOrigin, FoodOrigin.class),
+                EnumUtils.parse(mealType, MealType.class),
+                limit);
+        return ResponseEntity.ok(recipes);
+    }
+
+    @GetMapping(produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllRecipes() {
+        StreamingResponseBody body = recipeService::streamAll;
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
     @PostMapping("/compact-batch")
     public ResponseEntity<List<RecipeDto>> getCompactRecipesBatch(@RequestBody @Valid List<String> recipesIds) {
         List<RecipeDto> recipes = recipeService.getCompactsByIds(recipesIds);
@@ -93,17 +110,39 @@ public class RecipeController {
     }
 
     @GetMapping("/compact")
-    public ResponseEntity<List<RecipeDto>> getAllRecipesCompact() {
+    public ResponseEntity<List<RecipeDto>> getAllRecipesCompact(
+            @RequestParam Optional<String> cursor,
+            @RequestParam Optional<Integer> size) {
+        if (CursorUtils.isPaged(cursor, size)) {
+            return recipeService.getAllCompactPage(cursor, size).toResponseEntity();
+        }
         List<RecipeDto> recipes = recipeService.getAllCompact();
         return ResponseEntity.ok(recipes);
     }
 
+    @PostMapping("/ingredients-detailed/batch")
+    public ResponseEntity<List<RecipeWithIngredientsDetailedDto>> getRecipesWithIngredientsDetailedBatch(@RequestBody @Valid List<String> recipesIds) {
+        List<RecipeWithIngredientsDetailedDto> recipes = recipeService.getManyWithIngredientsDetailedByIds(recipesIds);
+        return ResponseEntity.ok(recipes);
+    }
+
+    @GetMapping(path = "/compact", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllRecipesCompact() {
+        StreamingResponseBody body = recipeService::streamAllCompact;
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<RecipeDto> getRecipeById(@PathVariable String id) {
         RecipeDto recipe = recipeService.getOneById(id);
         return ResponseEntity.ok(recipe);
     }
 
+    @GetMapping("/{id}/save-count")
+    public ResponseEntity<Long> getRecipeSaveCount(@PathVariable String id) {
+        return ResponseEntity.ok(recipeService.countSaves(id));
+    }
+
     @GetMapping("/{id}/ingredients-detailed")
     public ResponseEntity<RecipeWithIngredientsDetailedDto> getRecipeWithIngredientsDetailedById(@PathVariable String id) {
         RecipeWithIngredientsDetailedDto recipe = recipeService.getOneWithIngredientsDetailedById(id);
@@ -1,19 +1,31 @@
 package com.example.recipe.controller;
 
+import com.example.recipe.dto.GroceryListDto;
+import com.example.recipe.dto.GroceryOperationsResultDto;
 import com.example.recipe.dto.RecipeDto;
 import com.example.recipe.dto.UserDto;
+import com.example.recipe.dto.UserRecipeLinkDto;
+import com.example.recipe.model.Amount;
 import com.example.recipe.model.Grocery;
+import com.example.recipe.model.GroceryIngredient;
+import com.example.recipe.model.GroceryOperation;
+import com.example.recipe.service.GroceryService;
 import com.example.recipe.service.RecipeService;
 import com.example.recipe.service.UserService;
+import com.example.recipe.utils.CursorUtils;
 import com.example.recipe.utils.FileStorageUtils;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/v1/users")
@@ -23,11 +35,12 @@ public class UserController {
 
     private final UserService userService;
     private final RecipeService recipeService;
+    private final GroceryService groceryService;
 
 
     @GetMapping("/{id}/grocery")
     public ResponseEntity<Grocery> getGroceryForUserWithId(@PathVariable String id) {
-        Grocery grocery = userService.getGroceryForUserWithId(id);
+        Grocery grocery = groceryService.getGrocery(id);
         return ResponseEntity.ok(grocery);
     }
 
@@ -38,6 +51,70 @@ public class UserController {
         return ResponseEntity.ok(userDto);
     }
 
+    // Grocery list computed from the recipes planned in the calendar between from and to, both included
+    @PostMapping("/{id}/grocery/from-calendar")
+    public ResponseEntity<GroceryListDto> groceryFromCalendar(
+            @PathVariable String id,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam LocalDate from,
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam LocalDate to) {
+        return ResponseEntity.ok(groceryService.fromCalendar(id, from, to));
+    }
+
+    @PatchMapping("/{id}/grocery/planned/{ingredientId}/bought")
+    public ResponseEntity<Void> setPlannedGroceryItemBought(@PathVariable String id,
+                                                            @PathVariable String ingredientId,
+                                                            @RequestParam boolean alreadyBought) {
+        groceryService.setPlannedBought(id, ingredientId, alreadyBought);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Recomputes the planned totals from the whole calendar, e.g. after planned recipes were edited
+    @PostMapping("/{id}/grocery/planned/rebuild")
+    public ResponseEntity<Void> rebuildPlannedGrocery(@PathVariable String id) {
+        groceryService.rebuildPlanned(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /* GROCERY ITEMS : only the changed item is sent and written, items are identified by their ingredientName */
+
+    @PostMapping("/{id}/grocery/items")
+    public ResponseEntity<Void> addGroceryItem(@PathVariable String id, @RequestBody GroceryIngredient item) {
+        userService.applyGroceryOperation(id, new GroceryOperation(GroceryOperation.Type.ADD,
+                item.getIngredientName(), item.getIngredientType(), item.getQuantity(), item.isAlreadyBought()));
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/{id}/grocery/items/{ingredientName}")
+    public ResponseEntity<Void> removeGroceryItem(@PathVariable String id, @PathVariable String ingredientName) {
+        userService.applyGroceryOperation(id, new GroceryOperation(GroceryOperation.Type.REMOVE,
+                ingredientName, null, null, null));
+        return ResponseEntity.noContent().build();
+    }
+
+    @PatchMapping("/{id}/grocery/items/{ingredientName}/bought")
+    public ResponseEntity<Void> setGroceryItemBought(@PathVariable String id,
+                                                     @PathVariable String ingredientName,
+                                                     @RequestParam boolean alreadyBought) {
+        userService.applyGroceryOperation(id, new GroceryOperation(GroceryOperation.Type.SET_BOUGHT,
+                ingredientName, null, null, alreadyBought));
+        return ResponseEntity.noContent().build();
+    }
+
+    @PutMapping("/{id}/grocery/items/{ingredientName}/quantity")
+    public ResponseEntity<Void> setGroceryItemQuantity(@PathVariable String id,
+                                                       @PathVariable String ingredientName,
+                                                       @RequestBody Amount quantity) {
+        userService.applyGroceryOperation(id, new GroceryOperation(GroceryOperation.Type.SET_QUANTITY,
+                ingredientName, null, quantity, null));
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/{id}/grocery/operations")
+    public ResponseEntity<GroceryOperationsResultDto> applyGroceryOperations(@PathVariable String id,
+                                                                             @RequestBody List<GroceryOperation> operations) {
+        return ResponseEntity.ok(userService.applyGroceryOperations(id, operations));
+    }
+
     @PostMapping(path = "{tenantId}/recipe-with-cover-image",
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE)
@@ -62,30 +139,36 @@ public class UserController {
     }
 
     @GetMapping("/{tenantId}/user-recipes")
-    public ResponseEntity<List<RecipeDto>> fetchUsersRecipes(@PathVariable String tenantId) {
+    public ResponseEntity<List<RecipeDto>> fetchUsersRecipes(
+            @PathVariable String tenantId,
+            @RequestParam Optional<String> cursor,
+            @RequestParam Optional<Integer> size) {
+        if (CursorUtils.isPaged(cursor, size)) {
+            return recipeService.fetchUsersRecipesPage(tenantId, cursor, size).toResponseEntity();
+        }
         List<RecipeDto> recipes = recipeService.fetchUsersRecipes(tenantId);
         return ResponseEntity.ok(recipes);
     }
 
     @PostMapping("/{tenantId}/user-recipes")
-    public ResponseEntity<UserDto> addRecipeToUserRecipes(
+    public ResponseEntity<UserRecipeLinkDto> addRecipeToUserRecipes(
             @PathVariable String tenantId,
             @RequestParam String recipeId
     ) {
 
-        UserDto updatedUser = recipeService.addRecipeToUserRecipes(tenantId, recipeId);
-        return ResponseEntity.ok(updatedUser);
+        UserRecipeLinkDto link = recipeService.addRecipeToUserRecipes(tenantId, recipeId);
+        return ResponseEntity.ok(link);
     }
 
 
     @DeleteMapping("/{tenantId}/user-recipes")
-    public ResponseEntity<UserDto> deleteRecipeOfUserRecipes(
+    public ResponseEntity<UserRecipeLinkDto> deleteRecipeOfUserRecipes(
             @PathVariable String tenantId,
             @RequestParam String recipeId
     ) {
-        UserDto updatedUser = recipeService.removeRecipeOfUserRecipes(tenantId, recipeId);
+        UserRecipeLinkDto link = recipeService.removeRecipeOfUserRecipes(tenantId, recipeId);
         recipeService.deleteOneById(recipeId);
-        return ResponseEntity.ok(updatedUser);
+        return ResponseEntity.ok(link);
     }
 
 
@@ -98,28 +181,43 @@ public class UserController {
         return ResponseEntity.ok(alreadySaved);
     }
 
+    @PostMapping("/{tenantId}/is-saved-recipe/batch")
+    public ResponseEntity<Map<String, Boolean>> checkIfUserAlreadySavedRecipes(
+            @PathVariable String tenantId,
+            @RequestBody @Valid List<String> recipesIds
+    ) {
+        Map<String, Boolean> savedByRecipeId = userService.checkIfUserAlreadySavedRecipes(tenantId, recipesIds);
+        return ResponseEntity.ok(savedByRecipeId);
+    }
+
     @GetMapping("/{tenantId}/saved-recipes")
-    public ResponseEntity<List<RecipeDto>> fetchUserSavedRecipes(@PathVariable String tenantId) {
+    public ResponseEntity<List<RecipeDto>> fetchUserSavedRecipes(
+            @PathVariable String tenantId,
+            @RequestParam Optional<String> cursor,
+            @RequestParam Optional<Integer> size) {
+        if (CursorUtils.isPaged(cursor, size)) {
+            return recipeService.fetchUsersSavedRecipesPage(tenantId, cursor, size).toResponseEntity();
+        }
         List<RecipeDto> recipes = recipeService.fetchUsersSavedRecipes(tenantId);
         return ResponseEntity.ok(recipes);
     }
 
     @PostMapping("/{id}/saved-recipes")
-    public ResponseEntity<UserDto> addRecipeIdToUser(
+    public ResponseEntity<UserRecipeLinkDto> addRecipeIdToUser(
             @PathVariable String id,
             @RequestParam String recipeId
     ) {
-        UserDto updatedUser = userService.addRecipeIdToUserSaved(id, recipeId);
-        return ResponseEntity.ok(updatedUser);
+        UserRecipeLinkDto link = userService.addRecipeIdToUserSaved(id, recipeId);
+        return ResponseEntity.ok(link);
     }
 
     @DeleteMapping("/{id}/saved-recipes")
-    public ResponseEntity<UserDto> removeRecipeIdFromUser(
+    public ResponseEntity<UserRecipeLinkDto> removeRecipeIdFromUser(
             @PathVariable String id,
             @RequestParam String recipeId
     ) {
-        UserDto updatedUser = userService.removeRecipeIdFromUserSaved(id, recipeId);
-        return ResponseEntity.ok(updatedUser);
+        UserRecipeLinkDto link = userService.removeRecipeIdFromUserSaved(id, recipeId);
+        return ResponseEntity.ok(link);
     }
 
 
@@ -131,6 +229,14 @@ public class UserController {
 
 
 
+    // Logs the user out everywhere, a new login is needed afterwards
+    @PostMapping("/{id}/tokens/revoke")
+    public ResponseEntity<?> revokeTokens(@PathVariable String id) {
+        userService.revokeTokens(id);
+        return ResponseEntity.noContent().build();
+    }
+
+
     @GetMapping("/details")
     public ResponseEntity<UserDto> getUserDetails() {
         var user = userService.getUserDetailed();
@@ -0,0 +1,33 @@
+package com.example.recipe.dto;
+
+import com.example.recipe.utils.CursorUtils;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@AllArgsConstructor
+public class CursorPage<T> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private List<T> items;
+    private String nextCursor; // null when this is the last page
+
+    /* fetched is expected to hold up to size + 1 entities, the extra one only tells us another page exists */
+    public static <E, T> CursorPage<T> of(List<E> fetched, int size, Function<E, String> idGetter, Function<E, T> mapper) {
+        boolean hasNext = fetched.size() > size;
+        List<E> pageEntities = hasNext ? fetched.subList(0, size) : fetched;
+        String nextCursor = hasNext ? CursorUtils.encode(idGetter.apply(pageEntities.get(size - 1))) : null;
+        return new CursorPage<>(pageEntities.stream().map(mapper).toList(), nextCursor);
+    }
+
+    // The body stays a plain list so existing clients keep working, the cursor travels in a header
+    public ResponseEntity<List<T>> toResponseEntity() {
+        var response = ResponseEntity.ok();
+        if (nextCursor != null) response.header(NEXT_CURSOR_HEADER, nextCursor);
+        return response.body(items);
+    }
+}
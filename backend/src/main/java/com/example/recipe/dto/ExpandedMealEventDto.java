@@ -0,0 +1,19 @@
+package com.example.recipe.dto;
+
+import com.example.recipe.model.MealType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// A MealEvent with its recipe inlined, recipe is left out when there's none or it's no longer visible
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ExpandedMealEventDto {
+    private MealType mealType;
+    private String eventName;
+    private String recipeId;
+    private RecipeDto recipe;
+}
@@ -0,0 +1,20 @@
+package com.example.recipe.dto;
+
+import com.example.recipe.entity.CalendarItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// days only holds the days that got new meals, emptySlots counts the slots no candidate recipe could fill
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GeneratedMealPlanDto {
+    private List<CalendarItem> days;
+    private int filledSlots;
+    private int emptySlots;
+    private int distinctIngredients;
+    private boolean saved;
+}
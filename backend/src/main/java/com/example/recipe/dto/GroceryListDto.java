@@ -0,0 +1,23 @@
+package com.example.recipe.dto;
+
+import com.example.recipe.model.GroceryIngredient;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+// Items keyed by IngredientType name, in the enum order
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroceryListDto {
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate from;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate to;
+    private Map<String, List<GroceryIngredient>> itemsByType;
+}
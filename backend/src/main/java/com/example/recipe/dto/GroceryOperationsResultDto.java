@@ -0,0 +1,14 @@
+package com.example.recipe.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Operations that changed nothing (item already there, missing or unchanged) are not counted as applied
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroceryOperationsResultDto {
+    private int requested;
+    private int applied;
+}
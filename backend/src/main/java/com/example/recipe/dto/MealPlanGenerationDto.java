@@ -0,0 +1,25 @@
+package com.example.recipe.dto;
+
+import com.example.recipe.model.FoodOrigin;
+import com.example.recipe.model.MealType;
+import com.example.recipe.model.RelativePrice;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Empty foodOrigins / relativePrices mean no preference
+@Data
+public class MealPlanGenerationDto {
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate from;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate to;
+    private Set<MealType> mealTypes = EnumSet.allOf(MealType.class);
+    private Set<FoodOrigin> foodOrigins = EnumSet.noneOf(FoodOrigin.class);
+    private Set<RelativePrice> relativePrices = EnumSet.noneOf(RelativePrice.class);
+    private int noRepeatDays = 7; // a recipe doesn't come back within this many days
+    private boolean dryRun = false; // only return the proposal, nothing is written
+}
@@ -3,6 +3,7 @@ package com.example.recipe.dto;
 import com.example.recipe.model.Grocery;
 import com.example.recipe.model.Role;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 import java.util.List;
@@ -18,6 +19,8 @@ public class UserDto {
     private Role role;
 
     private List<String> recipesIds;
+    // Read only, filled from user_saved_recipes for the user's own details
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     private List<String> savedRecipesIds;
     private Grocery grocery;
 
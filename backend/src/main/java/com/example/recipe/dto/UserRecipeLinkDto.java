@@ -0,0 +1,15 @@
+package com.example.recipe.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/* Lightweight answer of the saved / created recipes list operations, instead of the whole user */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserRecipeLinkDto {
+    private String userId;
+    private String recipeId;
+    private boolean linked; // whether recipeId is in the list after the operation
+}
@@ -16,7 +16,7 @@ import java.util.List;
 import java.util.UUID;
 
 @Document(collection = "meal_plans")
-@CompoundIndex(name = "unique_user_date", def = "{'userId': 1, 'date': 1}", unique = true)
+@CompoundIndex(name = "unique_tenant_date", def = "{'tenantId': 1, 'date': 1}", unique = true)
 @Data
 public class CalendarItem {
     @Id
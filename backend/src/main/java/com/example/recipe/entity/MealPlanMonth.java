@@ -0,0 +1,41 @@
+package com.example.recipe.entity;
+
+import com.example.recipe.dto.MealEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/* Bucket of a user's meal plans for one month, the "month" calendar storage (see CalendarStore).
+   The _id is "tenantId:yyyy-MM" so a month or a range of months is read through the _id index only */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "meal_plan_months")
+public class MealPlanMonth {
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Day {
+        private String id; // id of the day as a CalendarItem
+        private List<MealEvent> mealEvents;
+    }
+
+    @Id
+    private String id;
+    private String tenantId;
+    private String month;
+    // ISO date (yyyy-MM-dd) -> planned day
+    private Map<String, Day> days = new HashMap<>();
+
+    public static String bucketId(String tenantId, YearMonth month) {
+        return tenantId + ":" + month;
+    }
+}
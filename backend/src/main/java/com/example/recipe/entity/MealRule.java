@@ -0,0 +1,74 @@
+package com.example.recipe.entity;
+
+import com.example.recipe.dto.MealEvent;
+import com.example.recipe.model.MealType;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * Recurring meal ("oatmeal every weekday breakfast"), stored once and expanded when the calendar is read.
+ * DAILY repeats every interval days from start, WEEKLY on daysOfWeek every interval weeks from the week of start.
+ * until is included, exceptions are the dates where an occurrence was skipped.
+ */
+@Data
+@Document(collection = "meal_rules")
+public class MealRule {
+
+    public enum Frequency {
+        DAILY,
+        WEEKLY
+    }
+
+    @Id
+    private String id = UUID.randomUUID().toString();
+    @JsonIgnore
+    @Indexed(name = "tenant")
+    private String tenantId;
+
+    private MealType mealType;
+    private String recipeId;
+    private String eventName;
+
+    private Frequency frequency;
+    private int interval = 1;
+    private Set<DayOfWeek> daysOfWeek = new HashSet<>();
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate start;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+    private LocalDate until;
+    private Set<LocalDate> exceptions = new HashSet<>();
+
+    public boolean occursOn(LocalDate date) {
+        if (date.isBefore(start) || (until != null && date.isAfter(until))) return false;
+        if (exceptions != null && exceptions.contains(date)) return false;
+
+        return switch (frequency) {
+            case DAILY -> ChronoUnit.DAYS.between(start, date) % interval == 0;
+            case WEEKLY -> daysOfWeek.contains(date.getDayOfWeek())
+                    && ChronoUnit.WEEKS.between(
+                            start.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)),
+                            date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))) % interval == 0;
+        };
+    }
+
+    public MealEvent toMealEvent() {
+        MealEvent event = new MealEvent();
+        event.setMealType(mealType);
+        event.setRecipeId(recipeId);
+        event.setEventName(eventName);
+        return event;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.recipe.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.WildcardIndexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/* Ingredient totals of the recipes planned in a user's calendar, one document per user.
+   Maintained with $inc deltas on every meal event change instead of being recomputed from the calendar.
+   When a delta can't be applied (deleted recipe, failed write) or a planned recipe is edited the document is
+   flagged stale and rebuilt on the next read. version is bumped by every change so a rebuild computed
+   from an older calendar never overwrites newer deltas */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "planned_groceries")
+public class PlannedGrocery {
+    @Id
+    private String userId;
+    // ingredientId -> base unit (see UnitUtils) -> planned amount
+    private Map<String, Map<String, Integer>> totals = new HashMap<>();
+    // planned ingredients the user already ticked in the grocery list
+    private Set<String> boughtIngredientIds = new HashSet<>();
+    // recipeId -> times planned, to find the users to rebuild when a recipe changes
+    @WildcardIndexed
+    private Map<String, Integer> plannedRecipes = new HashMap<>();
+    private boolean stale;
+    private long version;
+    private Instant updatedAt;
+}
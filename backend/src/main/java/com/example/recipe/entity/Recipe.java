@@ -9,6 +9,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -19,6 +21,15 @@ import java.util.UUID;
 @Data
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Document(collection = "recipes")
+// mealTypes and foodOrigins are both arrays, mongo refuses a compound index over two array fields so each gets its own
+// the trailing _id lets the keyset pages be read in index order
+@CompoundIndexes({
+        @CompoundIndex(name = "public_id", def = "{'isPublic': 1, '_id': 1}"),
+        @CompoundIndex(name = "tenant_id", def = "{'tenantId': 1, '_id': 1}"),
+        @CompoundIndex(name = "public_price", def = "{'isPublic': 1, 'relativePrice': 1, '_id': 1}"),
+        @CompoundIndex(name = "public_origin_price", def = "{'isPublic': 1, 'foodOrigins': 1, 'relativePrice': 1, '_id': 1}"),
+        @CompoundIndex(name = "public_meal_price", def = "{'isPublic': 1, 'mealTypes': 1, 'relativePrice': 1, '_id': 1}")
+})
 public class Recipe {
     @Id
     private String id = UUID.randomUUID().toString();
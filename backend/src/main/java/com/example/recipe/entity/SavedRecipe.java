@@ -0,0 +1,34 @@
+package com.example.recipe.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/* One document per (user, saved recipe), replaces the unbounded savedRecipesIds array of User */
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Document(collection = "user_saved_recipes")
+@CompoundIndexes({
+        @CompoundIndex(name = "unique_user_recipe", def = "{'userId': 1, 'recipeId': 1}", unique = true),
+        @CompoundIndex(name = "user_saved_at", def = "{'userId': 1, 'savedAt': -1, '_id': -1}")
+})
+public class SavedRecipe {
+    @Id
+    @Builder.Default
+    private String id = UUID.randomUUID().toString();
+    private String userId;
+    @Indexed(name = "recipe")
+    private String recipeId;
+    private Instant savedAt;
+}
@@ -35,9 +35,6 @@ public class User implements UserDetails {
     @JsonInclude(JsonInclude.Include.NON_EMPTY)
     private List<String> recipesIds = new ArrayList<>();
 
-    @JsonInclude(JsonInclude.Include.NON_EMPTY)
-    private List<String> savedRecipesIds = new ArrayList<>();
-
     private Grocery grocery;
 
 
@@ -48,6 +45,9 @@ public class User implements UserDetails {
 
     private Role role;
 
+    // Part of every token, bumping it revokes all the tokens issued before
+    private int tokenVersion;
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return role.getAuthorities();
@@ -30,6 +30,36 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ApiErrorResponse> invalidCursor(InvalidCursorException e, HttpServletRequest request) {
+        var endpoint = request.getRequestURI();
+        var httpStatus = HttpStatus.BAD_REQUEST;
+
+        return ResponseEntity.status(httpStatus).body(
+                new ApiErrorResponse(
+                        httpStatus.value(),
+                        httpStatus.toString().split(" ")[1],
+                        endpoint,
+                        e.getMessage()
+                )
+        );
+    }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ApiErrorResponse> invalidRequest(InvalidRequestException e, HttpServletRequest request) {
+        var endpoint = request.getRequestURI();
+        var httpStatus = HttpStatus.BAD_REQUEST;
+
+        return ResponseEntity.status(httpStatus).body(
+                new ApiErrorResponse(
+                        httpStatus.value(),
+                        httpStatus.toString().split(" ")[1],
+                        endpoint,
+                        e.getMessage()
+                )
+        );
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiErrorResponse> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex, HttpServletRequest request) {
         var endpoint = request.getRequestURI();
@@ -0,0 +1,111 @@
+package com.example.recipe.index;
+
+import com.example.recipe.entity.lookup.Ingredient;
+import com.example.recipe.model.IngredientType;
+import com.example.recipe.utils.TextUtils;
+
+import java.util.*;
+
+/*
+ * Immutable trie over the accent-folded ingredient names, built from the ingredient cache.
+ * The full name and each of its words are inserted so "olive" finds "Huile d'olive".
+ * Lookups are fuzzy prefix matches : a name matches when one of its prefixes is within a few edits
+ * of what was typed, computed with a Levenshtein row per trie node so whole branches get pruned.
+ * A new index is built on every catalog change, readers never see a half updated trie.
+ */
+public class IngredientSuggestIndex {
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final List<Ingredient> terminals = new ArrayList<>();
+    }
+
+    private record Candidate(Ingredient ingredient, int distance) {
+    }
+
+    private static final Comparator<Candidate> RANKING = Comparator
+            .comparingInt(Candidate::distance)
+            .thenComparingInt((Candidate c) -> c.ingredient().getName().length())
+            .thenComparing(c -> c.ingredient().getName());
+
+    private final Node root = new Node();
+
+    public static IngredientSuggestIndex build(Collection<Ingredient> ingredients) {
+        IngredientSuggestIndex index = new IngredientSuggestIndex();
+        for (Ingredient ingredient : ingredients) {
+            if (ingredient.getName() == null || ingredient.getName().isBlank()) continue;
+
+            String folded = TextUtils.fold(ingredient.getName());
+            Set<String> keys = new LinkedHashSet<>();
+            keys.add(folded);
+            keys.addAll(Arrays.asList(folded.split("[^\\p{L}\\p{Nd}]+")));
+            keys.stream().filter(key -> !key.isEmpty()).forEach(key -> index.insert(key, ingredient));
+        }
+        return index;
+    }
+
+    public List<Ingredient> suggest(String prefix, Optional<IngredientType> type, int limit) {
+        if (prefix == null || prefix.isBlank()) return List.of();
+        String query = TextUtils.fold(prefix);
+        int maxEdits = maxEditsFor(query.length());
+
+        int[] firstRow = new int[query.length() + 1];
+        for (int i = 0; i < firstRow.length; i++) firstRow[i] = i;
+
+        Map<String, Candidate> bestById = new HashMap<>();
+        for (Map.Entry<Character, Node> child : root.children.entrySet()) {
+            collect(child.getValue(), child.getKey(), query, firstRow, Integer.MAX_VALUE, maxEdits, type, bestById);
+        }
+
+        return bestById.values().stream()
+                .sorted(RANKING)
+                .limit(limit)
+                .map(Candidate::ingredient)
+                .toList();
+    }
+
+    // Short inputs have to match exactly, otherwise every 2 letter word would match everything
+    private static int maxEditsFor(int length) {
+        if (length <= 2) return 0;
+        if (length <= 5) return 1;
+        return 2;
+    }
+
+    private void insert(String key, Ingredient ingredient) {
+        Node node = root;
+        for (char c : key.toCharArray()) {
+            node = node.children.computeIfAbsent(c, ch -> new Node());
+        }
+        node.terminals.add(ingredient);
+    }
+
+    /* bestPrefixDistance is the smallest distance between the query and any prefix seen on the path so far */
+    private void collect(Node node, char letter, String query, int[] previousRow, int bestPrefixDistance,
+                         int maxEdits, Optional<IngredientType> type, Map<String, Candidate> bestById) {
+        int columns = query.length() + 1;
+        int[] row = new int[columns];
+        row[0] = previousRow[0] + 1;
+        int rowMin = row[0];
+        for (int i = 1; i < columns; i++) {
+            int substitution = previousRow[i - 1] + (query.charAt(i - 1) == letter ? 0 : 1);
+            row[i] = Math.min(Math.min(row[i - 1] + 1, previousRow[i] + 1), substitution);
+            rowMin = Math.min(rowMin, row[i]);
+        }
+
+        int distance = Math.min(bestPrefixDistance, row[columns - 1]);
+        // Nothing below can get back under maxEdits unless a prefix on this path already matched
+        if (distance > maxEdits && rowMin > maxEdits) return;
+
+        if (distance <= maxEdits) {
+            for (Ingredient ingredient : node.terminals) {
+                if (type.isPresent() && type.get() != ingredient.getType()) continue;
+                bestById.merge(ingredient.getId(), new Candidate(ingredient, distance),
+                        (current, candidate) -> candidate.distance() < current.distance() ? candidate : current);
+            }
+        }
+
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            collect(child.getValue(), child.getKey(), query, row, distance, maxEdits, type, bestById);
+        }
+    }
+}
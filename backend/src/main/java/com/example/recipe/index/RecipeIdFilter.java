@@ -0,0 +1,304 @@
+package com.example.recipe.index;
+
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.repository.RecipeRepository;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/*
+ * Scalable Bloom filter of every recipe id, so lookups of ids that don't exist are answered without a query.
+ * mightContain() false means the recipe definitely doesn't exist, true means "ask mongo".
+ * When a stage is full a new one twice as large with a tighter error rate is added, which keeps the
+ * overall false positive rate under the configured one however many recipes are created.
+ * Bloom filters can't remove : ids of deleted recipes stay in and only cost a query, as before.
+ * Recipes created by other instances or written straight to mongo are picked up from a change stream on
+ * the recipes collection. The stream is opened before the filter is (re)built so no insert falls in between.
+ * Every id is reported as possibly present until a build is done, and again while the stream is down.
+ * A standalone mongo has no change streams : the filter is then built at startup, fed by local creates and
+ * rebuilt every rebuild-interval-ms, so a recipe created elsewhere can be missed until the next rebuild.
+ */
+@Component
+@Slf4j
+public class RecipeIdFilter {
+
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private static final class Stage {
+        private final AtomicLongArray words;
+        private final long bits;
+        private final int hashes;
+        private final long capacity;
+        private final LongAdder count = new LongAdder();
+
+        private Stage(long capacity, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+            this.bits = (long) words.length() * 64;
+            this.hashes = Math.max(1, (int) Math.round((double) this.bits / capacity * Math.log(2)));
+            this.capacity = capacity;
+        }
+
+        private void add(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                    if ((current & mask) != 0) break;
+                } while (!words.compareAndSet(word, current, current | mask));
+            }
+            count.increment();
+        }
+
+        private boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        // Expected false positive rate from the actual fill ratio : (set bits / bits) ^ hashes
+        private double falsePositiveRate() {
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) set += Long.bitCount(words.get(i));
+            return Math.pow((double) set / bits, hashes);
+        }
+
+        private boolean isFull() {
+            return count.sum() >= capacity;
+        }
+    }
+
+    private static final long WATCH_RETRY_DELAY_MS = 30_000;
+    // Returned by servers that can't open change streams, i.e. not a replica set nor a sharded cluster
+    private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+
+    private final RecipeRepository recipeRepository;
+    private final MongoTemplate mongoTemplate;
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+    // Replaced as a whole by each build, appended to when a stage is full
+    private volatile List<Stage> stages;
+    private volatile boolean ready = false;
+    private volatile boolean running = true;
+    private volatile boolean rebuildOnSchedule = false;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public RecipeIdFilter(RecipeRepository recipeRepository,
+                          MongoTemplate mongoTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${application.recipe-id-filter.expected-ids}") long initialCapacity,
+                          @Value("${application.recipe-id-filter.false-positive-rate}") double falsePositiveRate) {
+        this.recipeRepository = recipeRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.stages = newStages();
+
+        FunctionCounter.builder("recipe.id.filter.checks", checks, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("recipe.id.filter.rejections", rejections, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("recipe.id.filter.false.positives", falsePositives, LongAdder::sum).register(meterRegistry);
+        Gauge.builder("recipe.id.filter.expected.false.positive.rate", this, RecipeIdFilter::expectedFalsePositiveRate)
+                .register(meterRegistry);
+        Gauge.builder("recipe.id.filter.observed.false.positive.rate", this, RecipeIdFilter::observedFalsePositiveRate)
+                .register(meterRegistry);
+        Gauge.builder("recipe.id.filter.memory.bytes", this, RecipeIdFilter::memoryBytes)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread watcher = new Thread(this::watch, "recipe-id-filter-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+    }
+
+    /* Runs on its own thread : open the stream, build, then apply the inserts until the stream fails.
+       Failures are logged once when they start, not on every retry */
+    private void watch() {
+        var recipes = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Recipe.class));
+        boolean failing = false;
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes = recipes
+                    .watch(List.of(Aggregates.match(Filters.eq("operationType", "insert"))))
+                    .maxAwaitTime(1, TimeUnit.SECONDS)
+                    .cursor()) {
+                build();
+                if (failing) log.info("Recipe id filter is watching the recipes again");
+                failing = false;
+                while (running) {
+                    ChangeStreamDocument<Document> change = changes.tryNext();
+                    if (change == null || change.getDocumentKey() == null) continue;
+                    BsonValue id = change.getDocumentKey().get("_id");
+                    if (id != null && id.isString()) add(id.asString().getValue());
+                }
+            } catch (MongoException | DataAccessException e) {
+                if (e instanceof MongoCommandException command && command.getErrorCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+                    log.warn("Change streams are not supported by this mongo, the recipe id filter is rebuilt on a schedule instead");
+                    fallBackToScheduledRebuilds();
+                    return;
+                }
+                ready = false;
+                if (!failing) {
+                    log.warn("Recipe id filter stopped watching the recipes, every id is looked up in the database until it is back : {}", e.getMessage());
+                    failing = true;
+                }
+                sleep(WATCH_RETRY_DELAY_MS);
+            }
+        }
+    }
+
+    private void fallBackToScheduledRebuilds() {
+        rebuildOnSchedule = true;
+        try {
+            build();
+        } catch (MongoException | DataAccessException e) {
+            ready = false;
+            log.warn("Recipe id filter could not be built, retried at the next scheduled rebuild : {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.recipe-id-filter.rebuild-interval-ms}",
+            initialDelayString = "${application.recipe-id-filter.rebuild-interval-ms}")
+    public void scheduledRebuild() {
+        if (rebuildOnSchedule && running) fallBackToScheduledRebuilds();
+    }
+
+    // A fresh set of stages is filled then swapped in, readers keep using the previous one meanwhile
+    private void build() {
+        List<Stage> built = newStages();
+        try (Stream<Recipe> recipes = recipeRepository.streamAllWithFields("_id")) {
+            recipes.forEach(recipe -> add(built, recipe.getId()));
+        }
+        stages = built;
+        ready = true;
+        log.info("Recipe id filter built, {} stage(s) and {} bytes", built.size(), (long) memoryBytes());
+    }
+
+    private List<Stage> newStages() {
+        List<Stage> fresh = new CopyOnWriteArrayList<>();
+        // First stage gets half the error budget, the next ones a geometric series summing to the rest
+        fresh.add(new Stage(initialCapacity, falsePositiveRate * (1 - TIGHTENING_RATIO)));
+        return fresh;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void add(String recipeId) {
+        add(stages, recipeId);
+    }
+
+    private void add(List<Stage> target, String recipeId) {
+        long h1 = hash(recipeId);
+        long h2 = secondHash(h1);
+        Stage current = target.get(target.size() - 1);
+        if (current.isFull()) current = grow(target, current);
+        current.add(h1, h2);
+    }
+
+    public boolean mightContain(String recipeId) {
+        if (!ready) return true;
+        checks.increment();
+
+        long h1 = hash(recipeId);
+        long h2 = secondHash(h1);
+        for (Stage stage : stages) {
+            if (stage.mightContain(h1, h2)) return true;
+        }
+        rejections.increment();
+        return false;
+    }
+
+    // Called when mightContain said yes but the database had no such recipe
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    private synchronized Stage grow(List<Stage> target, Stage full) {
+        Stage last = target.get(target.size() - 1);
+        if (last != full) return last; // another thread already added a stage
+
+        int index = target.size();
+        double stageRate = falsePositiveRate * (1 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, index);
+        Stage next = new Stage(initialCapacity << index, stageRate);
+        target.add(next);
+        return next;
+    }
+
+    // A lookup is a false positive if any stage says yes
+    private double expectedFalsePositiveRate() {
+        double allNegative = 1;
+        for (Stage stage : stages) allNegative *= 1 - stage.falsePositiveRate();
+        return 1 - allNegative;
+    }
+
+    // Share of the ids that went to the database without existing, among those that don't exist
+    private double observedFalsePositiveRate() {
+        long negatives = falsePositives.sum() + rejections.sum();
+        return negatives == 0 ? 0 : (double) falsePositives.sum() / negatives;
+    }
+
+    private double memoryBytes() {
+        return stages.stream().mapToLong(stage -> stage.words.length() * 8L).sum();
+    }
+
+    // 64 bit FNV-1a, the second hash is derived from it (Kirsch-Mitzenmacher double hashing)
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long secondHash(long h1) {
+        long z = h1 + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return (z ^ (z >>> 31)) | 1;
+    }
+}
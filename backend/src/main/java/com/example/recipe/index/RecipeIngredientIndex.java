@@ -0,0 +1,191 @@
+package com.example.recipe.index;
+
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.model.RecipeIngredient;
+import com.example.recipe.repository.RecipeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/*
+ * Inverted index ingredientId -> recipes using it, backing the "what can I cook" ideas.
+ * Each recipe gets a dense int ordinal so the posting lists are plain BitSets, ordinals of deleted
+ * recipes are recycled. The index is built at startup then kept up to date by RecipeService, and rebuilt
+ * periodically to pick up the writes made through other instances.
+ */
+@Component
+@Slf4j
+public class RecipeIngredientIndex {
+
+    public record Match(String recipeId, int matchedIngredients, int totalIngredients) {
+        public double coverage() {
+            return (double) matchedIngredients / totalIngredients;
+        }
+
+        public int missingIngredients() {
+            return totalIngredients - matchedIngredients;
+        }
+    }
+
+    private static final Comparator<Match> RANKING = Comparator
+            .comparingDouble(Match::coverage).reversed()
+            .thenComparingInt(Match::missingIngredients)
+            .thenComparing(Match::recipeId);
+
+    private final RecipeRepository recipeRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, BitSet> recipesByIngredient = new HashMap<>();
+    private final Map<String, Integer> ordinalByRecipeId = new HashMap<>();
+    private final List<String> recipeIdByOrdinal = new ArrayList<>();
+    private final List<Set<String>> ingredientsByOrdinal = new ArrayList<>();
+    private final List<String> tenantByOrdinal = new ArrayList<>();
+    private final BitSet publicRecipes = new BitSet();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+
+    public RecipeIngredientIndex(RecipeRepository recipeRepository) {
+        this.recipeRepository = recipeRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        // Read outside the lock, readers are only blocked while the snapshot replaces the current content
+        List<Recipe> snapshot;
+        try (Stream<Recipe> recipes = recipeRepository.streamAllWithFields("ingredients.ingredientId", "isPublic", "tenantId")) {
+            snapshot = recipes.toList();
+        } catch (DataAccessException e) {
+            log.error("Could not build the recipe ingredient index", e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            clear();
+            snapshot.forEach(this::doUpsert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Recipe ingredient index built with {} recipes", snapshot.size());
+    }
+
+    @Scheduled(fixedDelayString = "${application.recipe-ingredient-index.rebuild-interval-ms}",
+            initialDelayString = "${application.recipe-ingredient-index.rebuild-interval-ms}")
+    public void scheduledRebuild() {
+        build();
+    }
+
+    public void upsert(Recipe recipe) {
+        lock.writeLock().lock();
+        try {
+            doUpsert(recipe);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String recipeId) {
+        lock.writeLock().lock();
+        try {
+            doRemove(recipeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* Recipes visible to tenantId sharing at least one ingredient with the given ones,
+       best coverage first then fewest missing ingredients */
+    public List<Match> findByIngredients(Collection<String> ingredientIds, String tenantId, int limit) {
+        lock.readLock().lock();
+        try {
+            int[] matched = new int[recipeIdByOrdinal.size()];
+            BitSet candidates = new BitSet();
+            for (String ingredientId : new HashSet<>(ingredientIds)) {
+                BitSet recipes = recipesByIngredient.get(ingredientId);
+                if (recipes == null) continue;
+                candidates.or(recipes);
+                for (int ordinal = recipes.nextSetBit(0); ordinal >= 0; ordinal = recipes.nextSetBit(ordinal + 1)) {
+                    matched[ordinal]++;
+                }
+            }
+
+            PriorityQueue<Match> best = new PriorityQueue<>(RANKING.reversed());
+            for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+                if (!publicRecipes.get(ordinal) && !Objects.equals(tenantId, tenantByOrdinal.get(ordinal))) continue;
+
+                best.add(new Match(recipeIdByOrdinal.get(ordinal), matched[ordinal], ingredientsByOrdinal.get(ordinal).size()));
+                if (best.size() > limit) best.poll();
+            }
+
+            List<Match> ranked = new ArrayList<>(best);
+            ranked.sort(RANKING);
+            return ranked;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void doUpsert(Recipe recipe) {
+        doRemove(recipe.getId());
+
+        Set<String> ingredientIds = new HashSet<>();
+        if (recipe.getIngredients() != null) {
+            recipe.getIngredients().stream()
+                    .map(RecipeIngredient::getIngredientId)
+                    .filter(Objects::nonNull)
+                    .forEach(ingredientIds::add);
+        }
+        if (ingredientIds.isEmpty()) return;
+
+        int ordinal = nextOrdinal();
+        ordinalByRecipeId.put(recipe.getId(), ordinal);
+        recipeIdByOrdinal.set(ordinal, recipe.getId());
+        ingredientsByOrdinal.set(ordinal, ingredientIds);
+        tenantByOrdinal.set(ordinal, recipe.getTenantId());
+        publicRecipes.set(ordinal, recipe.isPublic());
+        for (String ingredientId : ingredientIds) {
+            recipesByIngredient.computeIfAbsent(ingredientId, id -> new BitSet()).set(ordinal);
+        }
+    }
+
+    private void doRemove(String recipeId) {
+        Integer ordinal = ordinalByRecipeId.remove(recipeId);
+        if (ordinal == null) return;
+
+        for (String ingredientId : ingredientsByOrdinal.get(ordinal)) {
+            BitSet recipes = recipesByIngredient.get(ingredientId);
+            recipes.clear(ordinal);
+            if (recipes.isEmpty()) recipesByIngredient.remove(ingredientId);
+        }
+        recipeIdByOrdinal.set(ordinal, null);
+        ingredientsByOrdinal.set(ordinal, Set.of());
+        tenantByOrdinal.set(ordinal, null);
+        publicRecipes.clear(ordinal);
+        freeOrdinals.push(ordinal);
+    }
+
+    private void clear() {
+        recipesByIngredient.clear();
+        ordinalByRecipeId.clear();
+        recipeIdByOrdinal.clear();
+        ingredientsByOrdinal.clear();
+        tenantByOrdinal.clear();
+        publicRecipes.clear();
+        freeOrdinals.clear();
+    }
+
+    private int nextOrdinal() {
+        if (!freeOrdinals.isEmpty()) return freeOrdinals.pop();
+        recipeIdByOrdinal.add(null);
+        ingredientsByOrdinal.add(Set.of());
+        tenantByOrdinal.add(null);
+        return recipeIdByOrdinal.size() - 1;
+    }
+}
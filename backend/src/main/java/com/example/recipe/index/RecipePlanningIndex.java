@@ -0,0 +1,138 @@
+package com.example.recipe.index;
+
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.model.FoodOrigin;
+import com.example.recipe.model.MealType;
+import com.example.recipe.model.RecipeIngredient;
+import com.example.recipe.model.RelativePrice;
+import com.example.recipe.repository.RecipeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/*
+ * Compact recipe x ingredient matrix for the meal plan generator : per recipe only its meal types and
+ * food origins as bit masks, its price and the sorted int ordinals of its ingredients.
+ * Built once at startup then kept up to date by RecipeService, like the other recipe indexes.
+ * Ingredient ordinals are never recycled, a removed ingredient just stops being referenced.
+ */
+@Component
+@Slf4j
+public class RecipePlanningIndex {
+
+    // mealTypes == 0 means the recipe didn't declare any and fits every meal
+    public record PlannableRecipe(String id, String tenantId, boolean isPublic, int mealTypes, int foodOrigins,
+                                  RelativePrice relativePrice, int[] ingredients) {
+
+        public boolean fits(MealType mealType) {
+            return mealTypes == 0 || (mealTypes & (1 << mealType.ordinal())) != 0;
+        }
+
+        public boolean hasAnyOrigin(Set<FoodOrigin> origins) {
+            for (FoodOrigin origin : origins) {
+                if ((foodOrigins & (1 << origin.ordinal())) != 0) return true;
+            }
+            return false;
+        }
+    }
+
+    // Recipes visible to a user, ingredientCount bounds every ingredient ordinal they reference
+    public record Snapshot(List<PlannableRecipe> recipes, int ingredientCount) {
+    }
+
+    private final RecipeRepository recipeRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, PlannableRecipe> recipesById = new HashMap<>();
+    private final Map<String, Integer> ordinalByIngredientId = new HashMap<>();
+
+    public RecipePlanningIndex(RecipeRepository recipeRepository) {
+        this.recipeRepository = recipeRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        try (Stream<Recipe> recipes = recipeRepository.streamAllWithFields(
+                "mealTypes", "foodOrigins", "relativePrice", "isPublic", "tenantId", "ingredients.ingredientId")) {
+            lock.writeLock().lock();
+            try {
+                recipes.forEach(this::doUpsert);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Recipe planning index built with {} recipes and {} ingredients",
+                    recipesById.size(), ordinalByIngredientId.size());
+        } catch (DataAccessException e) {
+            log.error("Could not build the recipe planning index", e);
+        }
+    }
+
+    public void upsert(Recipe recipe) {
+        lock.writeLock().lock();
+        try {
+            doUpsert(recipe);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String recipeId) {
+        lock.writeLock().lock();
+        try {
+            recipesById.remove(recipeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* Public recipes, the user's own and the ones in its recipesIds. The entries are immutable,
+       the search works on the returned list without holding the lock */
+    public Snapshot snapshot(String tenantId, Collection<String> recipesIds) {
+        lock.readLock().lock();
+        try {
+            Map<String, PlannableRecipe> visible = new LinkedHashMap<>();
+            for (PlannableRecipe recipe : recipesById.values()) {
+                if (recipe.isPublic() || Objects.equals(tenantId, recipe.tenantId())) visible.put(recipe.id(), recipe);
+            }
+            for (String recipeId : recipesIds) {
+                PlannableRecipe recipe = recipesById.get(recipeId);
+                if (recipe != null) visible.putIfAbsent(recipeId, recipe);
+            }
+            return new Snapshot(new ArrayList<>(visible.values()), ordinalByIngredientId.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void doUpsert(Recipe recipe) {
+        int mealTypes = 0;
+        if (recipe.getMealTypes() != null) {
+            for (MealType mealType : recipe.getMealTypes()) {
+                if (mealType != null) mealTypes |= 1 << mealType.ordinal();
+            }
+        }
+        int foodOrigins = 0;
+        if (recipe.getFoodOrigins() != null) {
+            for (FoodOrigin origin : recipe.getFoodOrigins()) {
+                if (origin != null) foodOrigins |= 1 << origin.ordinal();
+            }
+        }
+        int[] ingredients = recipe.getIngredients() == null ? new int[0] : recipe.getIngredients().stream()
+                .map(RecipeIngredient::getIngredientId)
+                .filter(Objects::nonNull)
+                .mapToInt(id -> ordinalByIngredientId.computeIfAbsent(id, key -> ordinalByIngredientId.size()))
+                .distinct()
+                .sorted()
+                .toArray();
+
+        recipesById.put(recipe.getId(), new PlannableRecipe(recipe.getId(), recipe.getTenantId(), recipe.isPublic(),
+                mealTypes, foodOrigins, recipe.getRelativePrice(), ingredients));
+    }
+}
@@ -0,0 +1,269 @@
+package com.example.recipe.index;
+
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.model.FoodOrigin;
+import com.example.recipe.model.MealType;
+import com.example.recipe.model.RelativePrice;
+import com.example.recipe.repository.RecipeRepository;
+import com.example.recipe.utils.TextUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/*
+ * Full-text inverted index over recipe name, description and steps, scored with BM25.
+ * Terms found in the name count NAME_WEIGHT times so title matches come first.
+ * Filters and visibility are checked on the indexed metadata, no query is needed to rank.
+ * Kept up to date by RecipeService and rebuilt periodically to pick up the writes made through other instances.
+ */
+@Component
+@Slf4j
+public class RecipeSearchIndex {
+
+    public record Hit(String recipeId, double score) {
+    }
+
+    private record IndexedRecipe(String id, Map<String, Integer> termFrequencies, int length, boolean isPublic,
+                                 String tenantId, RelativePrice relativePrice, Set<FoodOrigin> foodOrigins,
+                                 Set<MealType> mealTypes) {
+    }
+
+    private static final int NAME_WEIGHT = 3;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int BUILD_BATCH_SIZE = 1000;
+
+    private final RecipeRepository recipeRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>(); // term -> ordinal -> weighted tf
+    private final Map<String, Integer> ordinalByRecipeId = new HashMap<>();
+    private final List<IndexedRecipe> recipeByOrdinal = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private long totalLength = 0;
+    private Set<String> indexedDuringBuild; // non-null while a build runs, the recipes it must not sweep
+
+    public RecipeSearchIndex(RecipeRepository recipeRepository) {
+        this.recipeRepository = recipeRepository;
+    }
+
+    /* Recipes are upserted batch by batch so searches keep being served during a rebuild, the ones neither
+       read nor written meanwhile were deleted elsewhere and are swept at the end */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void build() {
+        lock.writeLock().lock();
+        try {
+            indexedDuringBuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        boolean complete = false;
+        try (Stream<Recipe> recipes = recipeRepository.streamAllWithFields(
+                "name", "description", "steps", "isPublic", "tenantId", "relativePrice", "foodOrigins", "mealTypes")) {
+            List<Recipe> batch = new ArrayList<>(BUILD_BATCH_SIZE);
+            for (Recipe recipe : (Iterable<Recipe>) recipes::iterator) {
+                batch.add(recipe);
+                if (batch.size() == BUILD_BATCH_SIZE) {
+                    indexBatch(batch);
+                    batch.clear();
+                }
+            }
+            indexBatch(batch);
+            complete = true;
+        } catch (DataAccessException e) {
+            log.error("Could not build the recipe search index", e);
+        } finally {
+            finishBuild(complete);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.recipe-search-index.rebuild-interval-ms}",
+            initialDelayString = "${application.recipe-search-index.rebuild-interval-ms}")
+    public void scheduledRebuild() {
+        build();
+    }
+
+    private void finishBuild(boolean complete) {
+        lock.writeLock().lock();
+        try {
+            if (complete) {
+                List<String> deleted = ordinalByRecipeId.keySet().stream()
+                        .filter(id -> !indexedDuringBuild.contains(id))
+                        .toList();
+                deleted.forEach(this::doRemove);
+                log.info("Recipe search index built with {} recipes", ordinalByRecipeId.size());
+            }
+            indexedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void upsert(Recipe recipe) {
+        IndexedRecipe indexed = analyze(recipe);
+        lock.writeLock().lock();
+        try {
+            doUpsert(indexed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String recipeId) {
+        lock.writeLock().lock();
+        try {
+            doRemove(recipeId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Hit> search(String text,
+                            Optional<RelativePrice> relativePrice,
+                            Optional<FoodOrigin> foodOrigin,
+                            Optional<MealType> mealType,
+                            String tenantId,
+                            int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(text));
+        if (terms.isEmpty()) return List.of();
+
+        lock.readLock().lock();
+        try {
+            int documentCount = ordinalByRecipeId.size();
+            if (documentCount == 0) return List.of();
+            double averageLength = (double) totalLength / documentCount;
+
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                Map<Integer, Integer> termPostings = postings.get(term);
+                if (termPostings == null) continue;
+
+                double idf = Math.log(1 + (documentCount - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+                termPostings.forEach((ordinal, tf) -> {
+                    IndexedRecipe recipe = recipeByOrdinal.get(ordinal);
+                    double norm = K1 * (1 - B + B * recipe.length() / averageLength);
+                    scores.merge(ordinal, idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                });
+            }
+
+            Comparator<Hit> ranking = Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::recipeId);
+            PriorityQueue<Hit> best = new PriorityQueue<>(ranking.reversed());
+            scores.forEach((ordinal, score) -> {
+                IndexedRecipe recipe = recipeByOrdinal.get(ordinal);
+                if (!recipe.isPublic() && !Objects.equals(tenantId, recipe.tenantId())) return;
+                if (relativePrice.isPresent() && relativePrice.get() != recipe.relativePrice()) return;
+                if (foodOrigin.isPresent() && !recipe.foodOrigins().contains(foodOrigin.get())) return;
+                if (mealType.isPresent() && !recipe.mealTypes().contains(mealType.get())) return;
+
+                best.add(new Hit(recipe.id(), score));
+                if (best.size() > limit) best.poll();
+            });
+
+            List<Hit> ranked = new ArrayList<>(best);
+            ranked.sort(ranking);
+            return ranked;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Lowercase, strip accents ("crème brûlée" -> "creme brulee") and split on anything that is not a letter or digit */
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return List.of();
+        String folded = TextUtils.fold(text);
+        List<String> tokens = new ArrayList<>();
+        for (String token : folded.split("[^\\p{L}\\p{Nd}]+")) {
+            if (token.length() > 1) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private void indexBatch(List<Recipe> batch) {
+        if (batch.isEmpty()) return;
+        // Tokenizing is the expensive part and runs in parallel, only the merge into the postings is serialized
+        List<IndexedRecipe> analyzed = batch.parallelStream().map(RecipeSearchIndex::analyze).toList();
+        lock.writeLock().lock();
+        try {
+            analyzed.forEach(this::doUpsert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static IndexedRecipe analyze(Recipe recipe) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        int length = 0;
+        for (String token : tokenize(recipe.getName())) {
+            termFrequencies.merge(token, NAME_WEIGHT, Integer::sum);
+            length += NAME_WEIGHT;
+        }
+        List<String> bodies = new ArrayList<>();
+        bodies.add(recipe.getDescription());
+        if (recipe.getSteps() != null) bodies.addAll(recipe.getSteps());
+        for (String body : bodies) {
+            for (String token : tokenize(body)) {
+                termFrequencies.merge(token, 1, Integer::sum);
+                length++;
+            }
+        }
+
+        return new IndexedRecipe(
+                recipe.getId(),
+                termFrequencies,
+                length,
+                recipe.isPublic(),
+                recipe.getTenantId(),
+                recipe.getRelativePrice(),
+                toEnumSet(recipe.getFoodOrigins(), FoodOrigin.class),
+                toEnumSet(recipe.getMealTypes(), MealType.class)
+        );
+    }
+
+    private static <E extends Enum<E>> Set<E> toEnumSet(List<E> values, Class<E> type) {
+        EnumSet<E> set = EnumSet.noneOf(type);
+        if (values != null) values.stream().filter(Objects::nonNull).forEach(set::add);
+        return set;
+    }
+
+    private void doUpsert(IndexedRecipe recipe) {
+        doRemove(recipe.id());
+
+        int ordinal;
+        if (!freeOrdinals.isEmpty()) {
+            ordinal = freeOrdinals.pop();
+            recipeByOrdinal.set(ordinal, recipe);
+        } else {
+            ordinal = recipeByOrdinal.size();
+            recipeByOrdinal.add(recipe);
+        }
+        ordinalByRecipeId.put(recipe.id(), ordinal);
+        if (indexedDuringBuild != null) indexedDuringBuild.add(recipe.id());
+        totalLength += recipe.length();
+        recipe.termFrequencies().forEach((term, tf) ->
+                postings.computeIfAbsent(term, t -> new HashMap<>()).put(ordinal, tf));
+    }
+
+    private void doRemove(String recipeId) {
+        Integer ordinal = ordinalByRecipeId.remove(recipeId);
+        if (ordinal == null) return;
+
+        IndexedRecipe recipe = recipeByOrdinal.get(ordinal);
+        for (String term : recipe.termFrequencies().keySet()) {
+            Map<Integer, Integer> termPostings = postings.get(term);
+            termPostings.remove(ordinal);
+            if (termPostings.isEmpty()) postings.remove(term);
+        }
+        totalLength -= recipe.length();
+        recipeByOrdinal.set(ordinal, null);
+        freeOrdinals.push(ordinal);
+    }
+}
@@ -32,7 +32,6 @@ public class UserMapper implements IMapper<User, UserDto> {
         user.setRole(userDto.getRole());
         user.setGrocery(userDto.getGrocery());
         user.setRecipesIds(userDto.getRecipesIds());
-        user.setSavedRecipesIds(userDto.getSavedRecipesIds());
         return user;
     }
     @Override
@@ -49,7 +48,6 @@ public class UserMapper implements IMapper<User, UserDto> {
         userDto.setRole(user.getRole());
         userDto.setGrocery(user.getGrocery());
         userDto.setRecipesIds(user.getRecipesIds());
-        userDto.setSavedRecipesIds(user.getSavedRecipesIds());
         return userDto;
     }
 }
\ No newline at end of file
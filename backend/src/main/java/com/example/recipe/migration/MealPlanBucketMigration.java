@@ -0,0 +1,86 @@
+package com.example.recipe.migration;
+
+import com.example.recipe.entity.CalendarItem;
+import com.example.recipe.entity.MealPlanMonth;
+import com.mongodb.client.MongoCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.YearMonth;
+
+/*
+ * Copies the per-day meal_plans documents into the meal_plan_months buckets, to run before switching
+ * application.calendar.storage to "month". Days are streamed in (tenantId, date) order through the unique index
+ * and upserted into their bucket in unordered bulk writes. Each day is a $set of its own entry, so running it
+ * again overwrites with the same values. meal_plans is left untouched, switching back to "day" stays possible.
+ * Like SavedRecipesMigration it runs before the web server starts, so no request reads a half-filled bucket.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "application.migrations.meal-plan-buckets.enabled", havingValue = "true")
+public class MealPlanBucketMigration implements SmartInitializingSingleton {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            migrate();
+        } catch (DataAccessException e) {
+            // Days already copied are overwritten with the same values on the next startup
+            log.error("Meal plan bucket migration failed", e);
+        }
+    }
+
+    public void migrate() {
+        var days = mongoTemplate.getCollection(mongoTemplate.getCollectionName(CalendarItem.class));
+
+        long migratedDays = 0;
+        BulkOperations bulk = newBulk();
+        int pending = 0;
+        try (MongoCursor<Document> cursor = days.find()
+                .sort(new Document("tenantId", 1).append("date", 1))
+                .batchSize(BATCH_SIZE)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                // Read through the converter so the date is decoded exactly like CalendarItemRepository does
+                CalendarItem day = mongoTemplate.getConverter().read(CalendarItem.class, cursor.next());
+                if (day.getTenantId() == null || day.getDate() == null) continue;
+
+                YearMonth month = YearMonth.from(day.getDate());
+                bulk.upsert(
+                        new Query(Criteria.where("_id").is(MealPlanMonth.bucketId(day.getTenantId(), month))),
+                        new Update()
+                                .set("days." + day.getDate(), new MealPlanMonth.Day(day.getId(), day.getMealEvents()))
+                                .setOnInsert("tenantId", day.getTenantId())
+                                .setOnInsert("month", month.toString()));
+                migratedDays++;
+
+                if (++pending == BATCH_SIZE) {
+                    bulk.execute();
+                    bulk = newBulk();
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) bulk.execute();
+        log.info("Meal plan bucket migration done, {} days copied into monthly buckets", migratedDays);
+    }
+
+    private BulkOperations newBulk() {
+        return mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MealPlanMonth.class);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.recipe.migration;
+
+import com.example.recipe.entity.SavedRecipe;
+import com.example.recipe.entity.User;
+import com.mongodb.client.MongoCursor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/*
+ * One-time move of the embedded User.savedRecipesIds arrays into the user_saved_recipes collection.
+ * Users are streamed one at a time (only _id and the array are read), their entries are bulk inserted
+ * then the array is unset, so running it again only picks up the users that were not migrated yet.
+ * It runs once all the beans exist but before the web server starts, so no request ever reads the new
+ * collection before the users are moved. The User entity doesn't map the legacy array anymore and only
+ * $set updates touch existing users, so an array that could not be migrated yet is never lost.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+@ConditionalOnProperty(name = "application.migrations.saved-recipes.enabled", havingValue = "true")
+public class SavedRecipesMigration implements SmartInitializingSingleton {
+
+    private static final String LEGACY_FIELD = "savedRecipesIds";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            migrate();
+        } catch (DataAccessException e) {
+            // The legacy arrays are left untouched, the next startup picks them up
+            log.error("Saved recipes migration failed", e);
+        }
+    }
+
+    public void migrate() {
+        var users = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class));
+        Document filter = new Document(LEGACY_FIELD, new Document("$exists", true));
+        Document projection = new Document("_id", 1).append(LEGACY_FIELD, 1);
+
+        int migratedUsers = 0;
+        long migratedEntries = 0;
+        try (MongoCursor<Document> cursor = users.find(filter).projection(projection).iterator()) {
+            while (cursor.hasNext()) {
+                Document user = cursor.next();
+                String userId = user.getString("_id");
+                List<String> recipeIds = user.getList(LEGACY_FIELD, String.class, List.of());
+
+                migratedEntries += insertSavedRecipes(userId, recipeIds);
+                mongoTemplate.updateFirst(
+                        new Query(Criteria.where("_id").is(userId)),
+                        new Update().unset(LEGACY_FIELD),
+                        User.class);
+                migratedUsers++;
+            }
+        }
+        log.info("Saved recipes migration done, {} users and {} saved recipes moved", migratedUsers, migratedEntries);
+    }
+
+    private int insertSavedRecipes(String userId, List<String> recipeIds) {
+        if (recipeIds.isEmpty()) return 0;
+
+        // The original save date is unknown, the array order is kept by spacing the entries by one millisecond
+        Instant base = Instant.now().minusMillis(recipeIds.size());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SavedRecipe.class);
+        for (int i = 0; i < recipeIds.size(); i++) {
+            bulk.insert(SavedRecipe.builder()
+                    .userId(userId)
+                    .recipeId(recipeIds.get(i))
+                    .savedAt(base.plusMillis(i))
+                    .build());
+        }
+        try {
+            return bulk.execute().getInsertedCount();
+        } catch (BulkOperationException e) {
+            // Entries already present from a previous interrupted run hit the unique index, the others went in
+            return e.getResult().getInsertedCount();
+        }
+    }
+}
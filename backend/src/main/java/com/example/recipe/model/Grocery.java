@@ -3,6 +3,7 @@ package com.example.recipe.model;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Transient;
 
 import java.time.Instant;
 import java.util.List;
@@ -12,6 +13,10 @@ import java.util.List;
 public class Grocery {
     private List<GroceryIngredient> products;
 
+    // Derived from the calendar when the list is read (see PlannedGrocery), never stored with the user
+    @Transient
+    private List<GroceryIngredient> plannedProducts;
+
     @LastModifiedDate
     private Instant updatedAt;
 }
\ No newline at end of file
@@ -1,10 +1,13 @@
 package com.example.recipe.model;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 @Data
 public class GroceryIngredient {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String ingredientId; // set for the items coming from the catalog, manual items may only have a name
     private String ingredientName;
     private String ingredientType;
     private Amount quantity;
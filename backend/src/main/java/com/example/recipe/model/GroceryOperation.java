@@ -0,0 +1,32 @@
+package com.example.recipe.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/* One change to a single grocery item, items are identified by their ingredientName.
+   ADD uses ingredientType, quantity and alreadyBought, SET_BOUGHT alreadyBought, SET_QUANTITY quantity */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GroceryOperation {
+
+    public enum Type {
+        ADD,
+        REMOVE,
+        SET_BOUGHT,
+        SET_QUANTITY
+    }
+
+    @NotNull
+    private Type type;
+    @NotBlank
+    private String ingredientName;
+    private String ingredientType;
+    private Amount quantity;
+    private Boolean alreadyBought;
+}
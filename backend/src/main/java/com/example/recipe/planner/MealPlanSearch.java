@@ -0,0 +1,295 @@
+package com.example.recipe.planner;
+
+import com.example.recipe.index.RecipePlanningIndex.PlannableRecipe;
+import com.example.recipe.model.MealType;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/*
+ * Fills meal slots with recipes so the plan reuses the same ingredients as much as possible, which keeps the
+ * grocery list short. The plan maximises the shared uses (ingredient uses minus distinct ingredients) rather than
+ * minimising the distinct ingredients alone, which would favour recipes with few or no ingredients.
+ * Fewer distinct ingredients only break ties. A recipe can't come back within noRepeatDays days of itself.
+ * Each worker of the pool builds a randomized greedy plan then improves it with local search
+ * (replace the recipe of a random slot, keep the change unless it makes the plan worse) and restarts when stuck.
+ * Every worker stops at the deadline, the best plan of all of them wins.
+ */
+@Component
+public class MealPlanSearch {
+
+    public record Slot(int day, MealType mealType) {
+    }
+
+    /* A recipe already planned by the user, never moved. It counts for the no-repeat window, and for the
+       ingredients when it is inside the planned days (day may be negative or past the last day for the
+       meals around the range) */
+    public record FixedMeal(int day, int recipe) {
+    }
+
+    /* Days are numbered from 0 to days - 1. recipes holds every recipe a fixed meal may refer to,
+       selectable the indexes the slots may take */
+    public record Problem(List<PlannableRecipe> recipes, BitSet selectable, int ingredientCount, int days,
+                          List<Slot> slots, List<FixedMeal> fixedMeals, int noRepeatDays) {
+    }
+
+    // recipeBySlot holds indexes into Problem.recipes, -1 for a slot no recipe could fill
+    public record Result(int[] recipeBySlot, int emptySlots, int sharedUses, int distinctIngredients) {
+    }
+
+    // Fewest empty slots, then most shared ingredient uses, then fewest distinct ingredients
+    private static int compare(int emptySlots, int sharedUses, int distinct, int otherEmptySlots, int otherSharedUses, int otherDistinct) {
+        if (emptySlots != otherEmptySlots) return Integer.compare(emptySlots, otherEmptySlots);
+        if (sharedUses != otherSharedUses) return Integer.compare(otherSharedUses, sharedUses);
+        return Integer.compare(distinct, otherDistinct);
+    }
+
+    private static final Comparator<Result> BEST_FIRST = (a, b) -> compare(
+            a.emptySlots(), a.sharedUses(), a.distinctIngredients(), b.emptySlots(), b.sharedUses(), b.distinctIngredients());
+
+    // Candidates tried per slot by the greedy construction, a full scan of the catalog would eat the budget
+    private static final int GREEDY_SAMPLE = 64;
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+    private static final int STALL_LIMIT = 20_000;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final long timeBudgetNanos;
+
+    public MealPlanSearch(@Value("${application.meal-plan-generator.parallelism}") int parallelism,
+                          @Value("${application.meal-plan-generator.time-budget-ms}") long timeBudgetMs) {
+        this.parallelism = parallelism;
+        this.pool = new ForkJoinPool(parallelism);
+        this.timeBudgetNanos = timeBudgetMs * 1_000_000;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public Result search(Problem problem) {
+        return search(problem, System.nanoTime(), System.nanoTime() + timeBudgetNanos);
+    }
+
+    // Worker i is seeded with seed + i, a fixed seed and a run to the stall limit give a reproducible plan
+    Result search(Problem problem, long seed, long deadline) {
+        int[][] candidatesByMealType = candidatesByMealType(problem);
+
+        List<ForkJoinTask<Result>> workers = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            SplittableRandom random = new SplittableRandom(seed + i);
+            workers.add(pool.submit(() -> new Worker(problem, candidatesByMealType, random, deadline).run()));
+        }
+
+        return workers.stream()
+                .map(ForkJoinTask::join)
+                .min(BEST_FIRST)
+                .orElseThrow();
+    }
+
+    private static int[][] candidatesByMealType(Problem problem) {
+        int[][] candidates = new int[MealType.values().length][];
+        for (MealType mealType : MealType.values()) {
+            candidates[mealType.ordinal()] = problem.selectable().stream()
+                    .filter(i -> problem.recipes().get(i).fits(mealType))
+                    .toArray();
+        }
+        return candidates;
+    }
+
+    private static final class Worker {
+        private final Problem problem;
+        private final int[][] candidatesByMealType;
+        private final SplittableRandom random;
+        private final long deadline;
+        private final int window;
+
+        private final int[] recipeBySlot;
+        private final int[] ingredientUses;
+        // Days are shifted by window in the BitSets, fixed meals before the range have negative days
+        private final Map<Integer, BitSet> daysByRecipe = new HashMap<>();
+        private int totalUses;
+        private int distinctIngredients;
+        private int emptySlots;
+
+        private Worker(Problem problem, int[][] candidatesByMealType, SplittableRandom random, long deadline) {
+            this.problem = problem;
+            this.candidatesByMealType = candidatesByMealType;
+            this.random = random;
+            this.deadline = deadline;
+            this.window = Math.max(1, problem.noRepeatDays());
+            this.recipeBySlot = new int[problem.slots().size()];
+            this.ingredientUses = new int[problem.ingredientCount()];
+        }
+
+        private Result run() {
+            Result best = null;
+            // The first construction always completes so there is a plan even when the budget is tiny
+            do {
+                construct();
+                Result local = improve();
+                if (best == null || BEST_FIRST.compare(local, best) < 0) best = local;
+            } while (recipeBySlot.length > 0 && System.nanoTime() < deadline);
+            return best;
+        }
+
+        private void reset() {
+            Arrays.fill(recipeBySlot, -1);
+            Arrays.fill(ingredientUses, 0);
+            daysByRecipe.clear();
+            totalUses = 0;
+            distinctIngredients = 0;
+            emptySlots = recipeBySlot.length;
+            for (FixedMeal fixed : problem.fixedMeals()) {
+                if (fixed.day() >= 0 && fixed.day() < problem.days()) addIngredients(fixed.recipe());
+                daysByRecipe.computeIfAbsent(fixed.recipe(), r -> new BitSet()).set(fixed.day() + window);
+            }
+        }
+
+        private int sharedUses() {
+            return totalUses - distinctIngredients;
+        }
+
+        /* Slots in random order, each takes the sampled candidate with the most ingredients already needed,
+           then the fewest new ones */
+        private void construct() {
+            reset();
+            int[] order = shuffledSlots();
+            for (int slot : order) {
+                Slot target = problem.slots().get(slot);
+                int[] candidates = candidatesByMealType[target.mealType().ordinal()];
+                if (candidates.length == 0) continue;
+
+                int bestRecipe = -1;
+                int bestShared = -1;
+                int bestAdded = Integer.MAX_VALUE;
+                int tries = Math.min(GREEDY_SAMPLE, candidates.length);
+                int start = random.nextInt(candidates.length);
+                for (int i = 0; i < tries; i++) {
+                    int recipe = candidates[(start + i * (candidates.length / tries)) % candidates.length];
+                    if (repeats(recipe, target.day())) continue;
+                    int added = newIngredients(recipe);
+                    int shared = problem.recipes().get(recipe).ingredients().length - added;
+                    if (shared > bestShared || (shared == bestShared && added < bestAdded)
+                            || (shared == bestShared && added == bestAdded && random.nextBoolean())) {
+                        bestRecipe = recipe;
+                        bestShared = shared;
+                        bestAdded = added;
+                    }
+                }
+                if (bestRecipe >= 0) assign(slot, bestRecipe);
+            }
+        }
+
+        private Result improve() {
+            Result best = snapshot();
+            if (recipeBySlot.length == 0) return best;
+
+            int stalled = 0;
+            for (long iteration = 1; stalled < STALL_LIMIT; iteration++) {
+                if (iteration % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline) break;
+
+                int slot = random.nextInt(recipeBySlot.length);
+                Slot target = problem.slots().get(slot);
+                int[] candidates = candidatesByMealType[target.mealType().ordinal()];
+                if (candidates.length == 0) {
+                    stalled++;
+                    continue;
+                }
+                int previous = recipeBySlot[slot];
+                int recipe = candidates[random.nextInt(candidates.length)];
+                if (recipe == previous || repeats(recipe, target.day())) {
+                    stalled++;
+                    continue;
+                }
+
+                int emptyBefore = emptySlots;
+                int sharedBefore = sharedUses();
+                int distinctBefore = distinctIngredients;
+                unassign(slot);
+                assign(slot, recipe);
+
+                // Equal plans are accepted too, moving along plateaus is how the search gets out of them
+                if (compare(emptySlots, sharedUses(), distinctIngredients, emptyBefore, sharedBefore, distinctBefore) > 0) {
+                    unassign(slot);
+                    if (previous >= 0) assign(slot, previous);
+                    stalled++;
+                    continue;
+                }
+
+                if (compare(emptySlots, sharedUses(), distinctIngredients,
+                        best.emptySlots(), best.sharedUses(), best.distinctIngredients()) < 0) {
+                    best = snapshot();
+                    stalled = 0;
+                } else {
+                    stalled++;
+                }
+            }
+            return best;
+        }
+
+        private Result snapshot() {
+            return new Result(recipeBySlot.clone(), emptySlots, sharedUses(), distinctIngredients);
+        }
+
+        private int[] shuffledSlots() {
+            int[] order = new int[recipeBySlot.length];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            for (int i = order.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            return order;
+        }
+
+        // A recipe is planned at most once per day, so its days fit in a BitSet
+        private boolean repeats(int recipe, int day) {
+            BitSet days = daysByRecipe.get(recipe);
+            if (days == null) return false;
+            int shifted = day + window;
+            int nearest = days.nextSetBit(shifted - window + 1);
+            return nearest >= 0 && nearest < shifted + window;
+        }
+
+        private int newIngredients(int recipe) {
+            int added = 0;
+            for (int ingredient : problem.recipes().get(recipe).ingredients()) {
+                if (ingredientUses[ingredient] == 0) added++;
+            }
+            return added;
+        }
+
+        private void assign(int slot, int recipe) {
+            recipeBySlot[slot] = recipe;
+            emptySlots--;
+            addIngredients(recipe);
+            daysByRecipe.computeIfAbsent(recipe, r -> new BitSet()).set(problem.slots().get(slot).day() + window);
+        }
+
+        private void unassign(int slot) {
+            int recipe = recipeBySlot[slot];
+            if (recipe < 0) return;
+            recipeBySlot[slot] = -1;
+            emptySlots++;
+            for (int ingredient : problem.recipes().get(recipe).ingredients()) {
+                totalUses--;
+                if (--ingredientUses[ingredient] == 0) distinctIngredients--;
+            }
+            daysByRecipe.get(recipe).clear(problem.slots().get(slot).day() + window);
+        }
+
+        private void addIngredients(int recipe) {
+            for (int ingredient : problem.recipes().get(recipe).ingredients()) {
+                totalUses++;
+                if (ingredientUses[ingredient]++ == 0) distinctIngredients++;
+            }
+        }
+    }
+}
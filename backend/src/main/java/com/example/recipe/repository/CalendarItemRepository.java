@@ -1,11 +1,27 @@
 package com.example.recipe.repository;
 
 import com.example.recipe.entity.CalendarItem;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
-public interface CalendarItemRepository extends MongoRepository<CalendarItem, String> {
+public interface CalendarItemRepository extends MongoRepository<CalendarItem, String>, CalendarItemRepositoryCustom {
     Optional<CalendarItem> findByTenantIdAndDate(String tenantId, LocalDate date);
+
+    // Both bounds included, a single range scan of the (tenantId, date) index
+    @Query("{ 'tenantId': ?0, 'date': { $gte: ?1, $lte: ?2 } }")
+    List<CalendarItem> findByTenantIdAndDateRange(String tenantId, LocalDate from, LocalDate to, Sort sort);
+
+    List<CalendarItem> findByTenantId(String tenantId);
+
+    // Both bounds included, only the date and the mealType / recipeId of the meal events are read
+    @Query(value = "{ 'tenantId': ?0, 'date': { $gte: ?1, $lte: ?2 } }", fields = "{ 'date': 1, 'mealEvents.mealType': 1, 'mealEvents.recipeId': 1 }")
+    List<CalendarItem> findMealRecipeIdsByTenantIdAndDateRange(String tenantId, LocalDate from, LocalDate to, Sort sort);
+
+    @Query(value = "{ 'tenantId': ?0 }", fields = "{ 'date': 1, 'mealEvents.mealType': 1, 'mealEvents.recipeId': 1 }")
+    List<CalendarItem> findMealRecipeIdsByTenantId(String tenantId);
 }
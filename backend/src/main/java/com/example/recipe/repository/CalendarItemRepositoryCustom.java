@@ -0,0 +1,17 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.dto.MealEvent;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+
+// Merges of the per-day layout, see CalendarStore
+public interface CalendarItemRepositoryCustom {
+    CalendarStore.MergeResult mergeMealEvents(String tenantId, LocalDate date, List<MealEvent> mealEvents);
+
+    void mergeMealEvents(String tenantId, SortedMap<LocalDate, List<MealEvent>> mealEventsByDate);
+
+    Optional<CalendarStore.MergeResult> removeMealEvents(String tenantId, LocalDate date, List<MealEvent> toRemove);
+}
@@ -0,0 +1,83 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.dto.MealEvent;
+import com.example.recipe.entity.CalendarItem;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDate;
+import java.util.*;
+
+@RequiredArgsConstructor
+public class CalendarItemRepositoryCustomImpl implements CalendarItemRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public CalendarStore.MergeResult mergeMealEvents(String tenantId, LocalDate date, List<MealEvent> mealEvents) {
+        String idIfCreated = UUID.randomUUID().toString();
+        // The document before the update is returned, the merged one is rebuilt from it the way the pipeline does
+        Optional<CalendarItem> previous = Optional.ofNullable(mongoTemplate.findAndModify(
+                byDay(tenantId, date),
+                mergeUpdate(mealEvents, idIfCreated),
+                FindAndModifyOptions.options().upsert(true).returnNew(false),
+                CalendarItem.class));
+
+        CalendarItem merged = new CalendarItem();
+        merged.setId(previous.map(CalendarItem::getId).orElse(idIfCreated));
+        merged.setTenantId(tenantId);
+        merged.setDate(date);
+        merged.setMealEvents(CalendarStore.merge(previous.map(CalendarItem::getMealEvents).orElse(null), mealEvents));
+        return new CalendarStore.MergeResult(previous, merged);
+    }
+
+    @Override
+    public void mergeMealEvents(String tenantId, SortedMap<LocalDate, List<MealEvent>> mealEventsByDate) {
+        if (mealEventsByDate.isEmpty()) return;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, CalendarItem.class);
+        mealEventsByDate.forEach((date, mealEvents) -> bulk.upsert(byDay(tenantId, date), mergeUpdate(mealEvents, UUID.randomUUID().toString())));
+        bulk.execute();
+    }
+
+    @Override
+    public Optional<CalendarStore.MergeResult> removeMealEvents(String tenantId, LocalDate date, List<MealEvent> toRemove) {
+        AggregationOperation setStage = context -> new Document("$set",
+                new Document("mealEvents", MealEventPipelines.remainingEvents("$mealEvents", toRemove)));
+        Optional<CalendarItem> previous = Optional.ofNullable(mongoTemplate.findAndModify(
+                byDay(tenantId, date),
+                AggregationUpdate.from(List.of(setStage)),
+                FindAndModifyOptions.options().returnNew(false),
+                CalendarItem.class));
+
+        return previous.map(day -> {
+            CalendarItem remaining = new CalendarItem();
+            remaining.setId(day.getId());
+            remaining.setTenantId(tenantId);
+            remaining.setDate(date);
+            remaining.setMealEvents(CalendarStore.remove(day.getMealEvents(), toRemove));
+            return new CalendarStore.MergeResult(Optional.of(day), remaining);
+        });
+    }
+
+    private static Query byDay(String tenantId, LocalDate date) {
+        return new Query(Criteria.where("tenantId").is(tenantId).and("date").is(date));
+    }
+
+    private static UpdateDefinition mergeUpdate(List<MealEvent> mealEvents, String idIfCreated) {
+        Document set = new Document()
+                .append("mealEvents", MealEventPipelines.mergedEvents("$mealEvents", mealEvents))
+                // ids are UUID strings in this collection, an upsert would otherwise get an ObjectId
+                .append("_id", new Document("$ifNull", List.of("$_id", idIfCreated)));
+
+        AggregationOperation setStage = context -> new Document("$set", set);
+        return AggregationUpdate.from(List.of(setStage));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.dto.MealEvent;
+import com.example.recipe.entity.CalendarItem;
+import com.example.recipe.model.MealType;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/*
+ * Storage of the meal plans behind CalendarService, which always sees one CalendarItem per user and day.
+ * application.calendar.storage picks the layout : "day" stores one document per user and day (meal_plans),
+ * "month" one document per user and month holding a day-keyed map (meal_plan_months).
+ */
+public interface CalendarStore {
+
+    // previous is empty when the day didn't exist and was created by the merge
+    record MergeResult(Optional<CalendarItem> previous, CalendarItem merged) {
+    }
+
+    Optional<CalendarItem> findDay(String tenantId, LocalDate date);
+
+    // Both bounds included, sorted by date
+    List<CalendarItem> findRange(String tenantId, LocalDate from, LocalDate to);
+
+    List<CalendarItem> findAll(String tenantId);
+
+    // Same days as findRange / findAll with only the mealType and recipeId of their events, for the grocery totals
+    List<CalendarItem> findPlannedRecipes(String tenantId, LocalDate from, LocalDate to);
+
+    List<CalendarItem> findPlannedRecipes(String tenantId);
+
+    /* Atomic upsert of the day : its events of the same mealType as one of mealEvents are
+       replaced by them, the others are kept */
+    MergeResult mergeMealEvents(String tenantId, LocalDate date, List<MealEvent> mealEvents);
+
+    // Same merge for several days in one ordered bulk write, a single round trip
+    void mergeMealEvents(String tenantId, SortedMap<LocalDate, List<MealEvent>> mealEventsByDate);
+
+    /* Atomic removal of the day's events matching one of toRemove (see matches), empty when the day doesn't exist.
+       previous is the day as it was right before the removal */
+    Optional<MergeResult> removeMealEvents(String tenantId, LocalDate date, List<MealEvent> toRemove);
+
+    // What the merge pipeline computes on the server, for callers rebuilding the result from a previous state
+    static List<MealEvent> merge(List<MealEvent> existing, List<MealEvent> updates) {
+        Set<MealType> replacedTypes = updates.stream().map(MealEvent::getMealType).collect(Collectors.toSet());
+        List<MealEvent> merged = new ArrayList<>();
+        if (existing != null) {
+            existing.stream().filter(event -> !replacedTypes.contains(event.getMealType())).forEach(merged::add);
+        }
+        merged.addAll(updates);
+        return merged;
+    }
+
+    // Same mealType and either the same recipeId or the same eventName ignoring case
+    static boolean matches(MealEvent existing, List<MealEvent> toRemove) {
+        return toRemove.stream().anyMatch(candidate -> existing.getMealType() == candidate.getMealType() && (
+                (candidate.getRecipeId() != null && candidate.getRecipeId().equals(existing.getRecipeId())) ||
+                        (candidate.getEventName() != null && candidate.getEventName().equalsIgnoreCase(existing.getEventName()))));
+    }
+
+    static List<MealEvent> remove(List<MealEvent> existing, List<MealEvent> toRemove) {
+        if (existing == null) return new ArrayList<>();
+        return existing.stream().filter(event -> !matches(event, toRemove)).collect(Collectors.toCollection(ArrayList::new));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.dto.MealEvent;
+import com.example.recipe.entity.CalendarItem;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+
+// One meal_plans document per user and day, indexed on (tenantId, date)
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "application.calendar.storage", havingValue = "day", matchIfMissing = true)
+public class DayCalendarStore implements CalendarStore {
+
+    private final CalendarItemRepository calendarItemRepository;
+
+    @Override
+    public Optional<CalendarItem> findDay(String tenantId, LocalDate date) {
+        return calendarItemRepository.findByTenantIdAndDate(tenantId, date);
+    }
+
+    @Override
+    public List<CalendarItem> findRange(String tenantId, LocalDate from, LocalDate to) {
+        return calendarItemRepository.findByTenantIdAndDateRange(tenantId, from, to, Sort.by(Sort.Direction.ASC, "date"));
+    }
+
+    @Override
+    public List<CalendarItem> findAll(String tenantId) {
+        return calendarItemRepository.findByTenantId(tenantId);
+    }
+
+    @Override
+    public List<CalendarItem> findPlannedRecipes(String tenantId, LocalDate from, LocalDate to) {
+        return calendarItemRepository.findMealRecipeIdsByTenantIdAndDateRange(tenantId, from, to, Sort.by(Sort.Direction.ASC, "date"));
+    }
+
+    @Override
+    public List<CalendarItem> findPlannedRecipes(String tenantId) {
+        return calendarItemRepository.findMealRecipeIdsByTenantId(tenantId);
+    }
+
+    @Override
+    public MergeResult mergeMealEvents(String tenantId, LocalDate date, List<MealEvent> mealEvents) {
+        return calendarItemRepository.mergeMealEvents(tenantId, date, mealEvents);
+    }
+
+    @Override
+    public void mergeMealEvents(String tenantId, SortedMap<LocalDate, List<MealEvent>> mealEventsByDate) {
+        calendarItemRepository.mergeMealEvents(tenantId, mealEventsByDate);
+    }
+
+    @Override
+    public Optional<MergeResult> removeMealEvents(String tenantId, LocalDate date, List<MealEvent> toRemove) {
+        return calendarItemRepository.removeMealEvents(tenantId, date, toRemove);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.dto.MealEvent;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/* Update pipeline expressions shared by the calendar layouts, so the merge runs on the server against the current document */
+class MealEventPipelines {
+
+    /* Existing events (read from currentEventsPath) whose mealType is not being replaced + the new events.
+       New events are passed as a $literal, user text starting with "$" is never read as an expression */
+    static Document mergedEvents(String currentEventsPath, List<MealEvent> mealEvents) {
+        Set<String> replacedTypes = new LinkedHashSet<>();
+        List<Document> events = new ArrayList<>();
+        for (MealEvent event : mealEvents) {
+            replacedTypes.add(event.getMealType().name());
+            events.add(toDocument(event));
+        }
+
+        Document keptEvents = new Document("$filter", new Document()
+                .append("input", new Document("$ifNull", List.of(currentEventsPath, List.of())))
+                .append("cond", new Document("$not", List.of(
+                        new Document("$in", List.of("$$this.mealType", new Document("$literal", new ArrayList<>(replacedTypes))))))));
+        return new Document("$concatArrays", List.of(keptEvents, new Document("$literal", events)));
+    }
+
+    // Existing events not matching any of toRemove, the server side of CalendarStore.remove
+    static Document remainingEvents(String currentEventsPath, List<MealEvent> toRemove) {
+        List<Document> matches = new ArrayList<>();
+        for (MealEvent candidate : toRemove) {
+            List<Document> sameMeal = new ArrayList<>();
+            if (candidate.getRecipeId() != null) {
+                sameMeal.add(new Document("$eq", List.of("$$this.recipeId", new Document("$literal", candidate.getRecipeId()))));
+            }
+            if (candidate.getEventName() != null) {
+                sameMeal.add(new Document("$eq", List.of(
+                        new Document("$toLower", new Document("$ifNull", List.of("$$this.eventName", ""))),
+                        new Document("$literal", candidate.getEventName().toLowerCase(Locale.ROOT)))));
+            }
+            if (sameMeal.isEmpty() || candidate.getMealType() == null) continue;
+            matches.add(new Document("$and", List.of(
+                    new Document("$eq", List.of("$$this.mealType", new Document("$literal", candidate.getMealType().name()))),
+                    new Document("$or", sameMeal))));
+        }
+
+        // $or of nothing is rejected by the server, nothing to remove keeps every event
+        Object keep = matches.isEmpty() ? Boolean.TRUE : new Document("$not", List.of(new Document("$or", matches)));
+        return new Document("$filter", new Document()
+                .append("input", new Document("$ifNull", List.of(currentEventsPath, List.of())))
+                .append("cond", keep));
+    }
+
+    static Document toDocument(MealEvent event) {
+        Document document = new Document("mealType", event.getMealType().name());
+        if (event.getEventName() != null) document.append("eventName", event.getEventName());
+        if (event.getRecipeId() != null) document.append("recipeId", event.getRecipeId());
+        return document;
+    }
+}
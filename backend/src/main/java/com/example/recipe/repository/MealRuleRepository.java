@@ -0,0 +1,15 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.MealRule;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface MealRuleRepository extends MongoRepository<MealRule, String>, MealRuleRepositoryCustom {
+    List<MealRule> findByTenantId(String tenantId);
+
+    Optional<MealRule> findByIdAndTenantId(String id, String tenantId);
+
+    long deleteByIdAndTenantId(String id, String tenantId);
+}
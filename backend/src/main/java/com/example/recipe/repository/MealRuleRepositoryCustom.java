@@ -0,0 +1,11 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.MealRule;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+public interface MealRuleRepositoryCustom {
+    // Atomic $addToSet of the date in the rule's exceptions, empty when the user has no such rule
+    Optional<MealRule> addException(String id, String tenantId, LocalDate date);
+}
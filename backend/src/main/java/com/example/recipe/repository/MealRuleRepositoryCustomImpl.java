@@ -0,0 +1,27 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.MealRule;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class MealRuleRepositoryCustomImpl implements MealRuleRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<MealRule> addException(String id, String tenantId, LocalDate date) {
+        Query query = new Query(Criteria.where("_id").is(id).and("tenantId").is(tenantId));
+        return Optional.ofNullable(mongoTemplate.findAndModify(query,
+                new Update().addToSet("exceptions", date),
+                FindAndModifyOptions.options().returnNew(true),
+                MealRule.class));
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.dto.MealEvent;
+import com.example.recipe.entity.CalendarItem;
+import com.example.recipe.entity.MealPlanMonth;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+
+/*
+ * One meal_plan_months document per user and month, days are entries of its "days" map.
+ * A month view is a single document read by _id, a year of planning is 12 documents and 12 _id index entries.
+ * Every write targets the days.<date> entry only, so two days of the same month never overwrite each other.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "application.calendar.storage", havingValue = "month")
+public class MonthBucketCalendarStore implements CalendarStore {
+
+    private static final String DAYS = "days";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<CalendarItem> findDay(String tenantId, LocalDate date) {
+        Query query = byBucket(tenantId, YearMonth.from(date));
+        query.fields().include(dayPath(date));
+        return Optional.ofNullable(mongoTemplate.findOne(query, MealPlanMonth.class))
+                .map(bucket -> bucket.getDays().get(date.toString()))
+                .map(day -> toCalendarItem(tenantId, date, day));
+    }
+
+    @Override
+    public List<CalendarItem> findRange(String tenantId, LocalDate from, LocalDate to) {
+        List<MealPlanMonth> buckets = mongoTemplate.find(new Query(inMonths(tenantId, from, to)), MealPlanMonth.class);
+        return toCalendarItems(tenantId, buckets, from, to);
+    }
+
+    @Override
+    public List<CalendarItem> findAll(String tenantId) {
+        return toCalendarItems(tenantId, mongoTemplate.find(new Query(ofTenant(tenantId)), MealPlanMonth.class), LocalDate.MIN, LocalDate.MAX);
+    }
+
+    @Override
+    public List<CalendarItem> findPlannedRecipes(String tenantId, LocalDate from, LocalDate to) {
+        return toCalendarItems(tenantId, findPlannedRecipes(inMonths(tenantId, from, to)), from, to);
+    }
+
+    @Override
+    public List<CalendarItem> findPlannedRecipes(String tenantId) {
+        return toCalendarItems(tenantId, findPlannedRecipes(ofTenant(tenantId)), LocalDate.MIN, LocalDate.MAX);
+    }
+
+    /* Days are map entries so a find projection can't reach their events : the buckets are reshaped on the server
+       to keep only the mealType and recipeId of every event */
+    private List<MealPlanMonth> findPlannedRecipes(Criteria buckets) {
+        Document eventFields = new Document("$map", new Document()
+                .append("input", new Document("$ifNull", List.of("$$day.v.mealEvents", List.of())))
+                .append("as", "event")
+                .append("in", new Document("mealType", "$$event.mealType").append("recipeId", "$$event.recipeId")));
+        Document days = new Document("$arrayToObject", new Document("$map", new Document()
+                .append("input", new Document("$objectToArray", new Document("$ifNull", List.of("$" + DAYS, new Document()))))
+                .append("as", "day")
+                .append("in", new Document("k", "$$day.k").append("v", new Document("mealEvents", eventFields)))));
+
+        AggregationOperation projectStage = context -> new Document("$project", new Document(DAYS, days));
+        Aggregation aggregation = Aggregation.newAggregation(Aggregation.match(buckets), projectStage);
+        return mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(MealPlanMonth.class), MealPlanMonth.class)
+                .getMappedResults();
+    }
+
+    @Override
+    public MergeResult mergeMealEvents(String tenantId, LocalDate date, List<MealEvent> mealEvents) {
+        YearMonth month = YearMonth.from(date);
+        String idIfCreated = UUID.randomUUID().toString();
+        Query query = byBucket(tenantId, month);
+        query.fields().include(dayPath(date));
+
+        // The bucket before the update is returned (only this day), the merged day is rebuilt from it
+        Optional<MealPlanMonth.Day> previousDay = Optional.ofNullable(mongoTemplate.findAndModify(
+                        query,
+                        mergeUpdate(tenantId, month, Map.of(date, mealEvents), Map.of(date, idIfCreated)),
+                        FindAndModifyOptions.options().upsert(true).returnNew(false),
+                        MealPlanMonth.class))
+                .map(MealPlanMonth::getDays)
+                .map(days -> days.get(date.toString()));
+
+        Optional<CalendarItem> previous = previousDay.map(day -> toCalendarItem(tenantId, date, day));
+        CalendarItem merged = new CalendarItem();
+        merged.setId(previousDay.map(MealPlanMonth.Day::getId).orElse(idIfCreated));
+        merged.setTenantId(tenantId);
+        merged.setDate(date);
+        merged.setMealEvents(CalendarStore.merge(previousDay.map(MealPlanMonth.Day::getMealEvents).orElse(null), mealEvents));
+        return new MergeResult(previous, merged);
+    }
+
+    @Override
+    public void mergeMealEvents(String tenantId, SortedMap<LocalDate, List<MealEvent>> mealEventsByDate) {
+        if (mealEventsByDate.isEmpty()) return;
+
+        // All the days of a month go in the same update, a week is one or two updates of a single bulk write
+        Map<YearMonth, Map<LocalDate, List<MealEvent>>> byMonth = new TreeMap<>();
+        mealEventsByDate.forEach((date, events) -> byMonth.computeIfAbsent(YearMonth.from(date), m -> new TreeMap<>()).put(date, events));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, MealPlanMonth.class);
+        byMonth.forEach((month, days) -> {
+            Map<LocalDate, String> idsIfCreated = new HashMap<>();
+            days.keySet().forEach(date -> idsIfCreated.put(date, UUID.randomUUID().toString()));
+            bulk.upsert(byBucket(tenantId, month), mergeUpdate(tenantId, month, days, idsIfCreated));
+        });
+        bulk.execute();
+    }
+
+    @Override
+    public Optional<MergeResult> removeMealEvents(String tenantId, LocalDate date, List<MealEvent> toRemove) {
+        String path = dayPath(date);
+        // Only a bucket holding the day matches, the pipeline would otherwise create an empty day
+        Query query = new Query(Criteria.where("_id").is(MealPlanMonth.bucketId(tenantId, YearMonth.from(date))).and(path).exists(true));
+        query.fields().include(path);
+        AggregationOperation setStage = context -> new Document("$set",
+                new Document(path + ".mealEvents", MealEventPipelines.remainingEvents("$" + path + ".mealEvents", toRemove)));
+
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, AggregationUpdate.from(List.of(setStage)),
+                        FindAndModifyOptions.options().returnNew(false), MealPlanMonth.class))
+                .map(bucket -> bucket.getDays().get(date.toString()))
+                .map(day -> {
+                    CalendarItem previous = toCalendarItem(tenantId, date, day);
+                    CalendarItem remaining = toCalendarItem(tenantId, date, day);
+                    remaining.setMealEvents(CalendarStore.remove(day.getMealEvents(), toRemove));
+                    return new MergeResult(Optional.of(previous), remaining);
+                });
+    }
+
+    private static UpdateDefinition mergeUpdate(String tenantId, YearMonth month,
+                                                Map<LocalDate, List<MealEvent>> mealEventsByDate,
+                                                Map<LocalDate, String> idsIfCreated) {
+        Document set = new Document()
+                .append("tenantId", new Document("$literal", tenantId))
+                .append("month", new Document("$literal", month.toString()));
+        mealEventsByDate.forEach((date, mealEvents) -> {
+            String path = dayPath(date);
+            set.append(path, new Document()
+                    .append("id", new Document("$ifNull", List.of("$" + path + ".id", new Document("$literal", idsIfCreated.get(date)))))
+                    .append("mealEvents", MealEventPipelines.mergedEvents("$" + path + ".mealEvents", mealEvents)));
+        });
+
+        AggregationOperation setStage = context -> new Document("$set", set);
+        return AggregationUpdate.from(List.of(setStage));
+    }
+
+    private static List<CalendarItem> toCalendarItems(String tenantId, List<MealPlanMonth> buckets, LocalDate from, LocalDate to) {
+        List<CalendarItem> calendarItems = new ArrayList<>();
+        for (MealPlanMonth bucket : buckets) {
+            if (bucket.getDays() == null) continue;
+            bucket.getDays().forEach((key, day) -> {
+                LocalDate date = LocalDate.parse(key);
+                if (!date.isBefore(from) && !date.isAfter(to)) calendarItems.add(toCalendarItem(tenantId, date, day));
+            });
+        }
+        calendarItems.sort(Comparator.comparing(CalendarItem::getDate));
+        return calendarItems;
+    }
+
+    private static CalendarItem toCalendarItem(String tenantId, LocalDate date, MealPlanMonth.Day day) {
+        CalendarItem calendarItem = new CalendarItem();
+        calendarItem.setId(day.getId());
+        calendarItem.setTenantId(tenantId);
+        calendarItem.setDate(date);
+        calendarItem.setMealEvents(day.getMealEvents());
+        return calendarItem;
+    }
+
+    private static Criteria inMonths(String tenantId, LocalDate from, LocalDate to) {
+        List<String> bucketIds = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            bucketIds.add(MealPlanMonth.bucketId(tenantId, month));
+        }
+        return Criteria.where("_id").in(bucketIds);
+    }
+
+    /* Anchored prefix of the _id, answered by the _id index. The server only turns a regex into an index
+       range when the prefix is plain characters, so Pattern.quote's \Q...\E is avoided and each character escaped */
+    private static Criteria ofTenant(String tenantId) {
+        StringBuilder prefix = new StringBuilder("^");
+        for (char c : (tenantId + ":").toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) prefix.append('\\');
+            prefix.append(c);
+        }
+        return Criteria.where("_id").regex(prefix.toString());
+    }
+
+    private static Query byBucket(String tenantId, YearMonth month) {
+        return new Query(Criteria.where("_id").is(MealPlanMonth.bucketId(tenantId, month)));
+    }
+
+    private static String dayPath(LocalDate date) {
+        return DAYS + "." + date;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.PlannedGrocery;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface PlannedGroceryRepository extends MongoRepository<PlannedGrocery, String>, PlannedGroceryRepositoryCustom {
+}
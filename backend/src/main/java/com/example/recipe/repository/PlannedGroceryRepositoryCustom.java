@@ -0,0 +1,23 @@
+package com.example.recipe.repository;
+
+import java.util.Map;
+
+public interface PlannedGroceryRepositoryCustom {
+    /* Single atomic $inc of every ingredientId -> unit -> signed delta and of the planned recipe counts,
+       the document is created on the first change. Ingredients whose totals drop to 0 are no longer bought */
+    void incrementTotals(String userId, Map<String, Map<String, Integer>> deltas, Map<String, Integer> recipeDeltas);
+
+    // Version of the totals, creating the document if needed, to be passed back to replaceTotals
+    long currentVersion(String userId);
+
+    /* Replaces all the totals at once and clears the stale flag, only if nothing changed since expectedVersion.
+       The bought flags of ingredients still planned are kept. Returns false when a newer change won */
+    boolean replaceTotals(String userId, long expectedVersion, Map<String, Map<String, Integer>> totals, Map<String, Integer> plannedRecipes);
+
+    void markStale(String userId);
+
+    // Every user who planned the recipe, or whose totals predate the planned recipe counts
+    void markStaleByRecipe(String recipeId);
+
+    void setBought(String userId, String ingredientId, boolean alreadyBought);
+}
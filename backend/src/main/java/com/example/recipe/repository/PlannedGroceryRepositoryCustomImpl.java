@@ -0,0 +1,111 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.PlannedGrocery;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class PlannedGroceryRepositoryCustomImpl implements PlannedGroceryRepositoryCustom {
+
+    private static final String TOTALS = "totals";
+    private static final String BOUGHT = "boughtIngredientIds";
+    private static final String PLANNED_RECIPES = "plannedRecipes";
+    private static final String STALE = "stale";
+    private static final String VERSION = "version";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void incrementTotals(String userId, Map<String, Map<String, Integer>> deltas, Map<String, Integer> recipeDeltas) {
+        Update update = new Update().inc(VERSION, 1).currentDate("updatedAt");
+        deltas.forEach((ingredientId, deltasByUnit) -> deltasByUnit.forEach((unit, delta) -> {
+            if (delta != 0) update.inc(TOTALS + "." + ingredientId + "." + fieldKey(unit), delta);
+        }));
+        recipeDeltas.forEach((recipeId, delta) -> {
+            if (delta != 0) update.inc(PLANNED_RECIPES + "." + fieldKey(recipeId), delta);
+        });
+        PlannedGrocery updated = mongoTemplate.findAndModify(byUser(userId), update,
+                FindAndModifyOptions.options().returnNew(true).upsert(true), PlannedGrocery.class);
+
+        // Second write only when an ingredient the user ticked is not needed anymore
+        if (updated == null) return;
+        List<String> noLongerPlanned = deltas.keySet().stream()
+                .filter(updated.getBoughtIngredientIds()::contains)
+                .filter(ingredientId -> updated.getTotals().getOrDefault(ingredientId, Map.of())
+                        .values().stream().allMatch(total -> total <= 0))
+                .toList();
+        if (!noLongerPlanned.isEmpty()) {
+            mongoTemplate.updateFirst(byUser(userId), new Update().pullAll(BOUGHT, noLongerPlanned.toArray()), PlannedGrocery.class);
+        }
+    }
+
+    @Override
+    public long currentVersion(String userId) {
+        // $inc of 0 creates the document, and the version field on documents written before it existed
+        PlannedGrocery planned = mongoTemplate.findAndModify(byUser(userId), new Update().inc(VERSION, 0),
+                FindAndModifyOptions.options().returnNew(true).upsert(true), PlannedGrocery.class);
+        return planned == null ? 0 : planned.getVersion();
+    }
+
+    @Override
+    public boolean replaceTotals(String userId, long expectedVersion, Map<String, Map<String, Integer>> totals, Map<String, Integer> plannedRecipes) {
+        Map<String, Map<String, Integer>> sanitized = new HashMap<>();
+        totals.forEach((ingredientId, totalsByUnit) -> totalsByUnit.forEach((unit, total) ->
+                sanitized.computeIfAbsent(ingredientId, id -> new HashMap<>()).merge(fieldKey(unit), total, Integer::sum)));
+        Map<String, Integer> plannedByKey = new HashMap<>();
+        plannedRecipes.forEach((recipeId, times) -> plannedByKey.merge(fieldKey(recipeId), times, Integer::sum));
+        List<String> stillPlanned = sanitized.entrySet().stream()
+                .filter(entry -> entry.getValue().values().stream().anyMatch(total -> total > 0))
+                .map(Map.Entry::getKey)
+                .toList();
+
+        Update update = new Update()
+                .set(TOTALS, sanitized)
+                .set(PLANNED_RECIPES, plannedByKey)
+                .set(STALE, false)
+                .pull(BOUGHT, new Document("$nin", stillPlanned))
+                .inc(VERSION, 1)
+                .currentDate("updatedAt");
+        Query query = new Query(Criteria.where("_id").is(userId).and(VERSION).is(expectedVersion));
+        return mongoTemplate.updateFirst(query, update, PlannedGrocery.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public void markStale(String userId) {
+        mongoTemplate.upsert(byUser(userId), new Update().set(STALE, true).inc(VERSION, 1), PlannedGrocery.class);
+    }
+
+    @Override
+    public void markStaleByRecipe(String recipeId) {
+        Query query = new Query(new Criteria().orOperator(
+                Criteria.where(PLANNED_RECIPES + "." + fieldKey(recipeId)).gt(0),
+                Criteria.where(PLANNED_RECIPES).exists(false)));
+        mongoTemplate.updateMulti(query, new Update().set(STALE, true).inc(VERSION, 1), PlannedGrocery.class);
+    }
+
+    @Override
+    public void setBought(String userId, String ingredientId, boolean alreadyBought) {
+        Update update = alreadyBought
+                ? new Update().addToSet(BOUGHT, ingredientId)
+                : new Update().pull(BOUGHT, ingredientId);
+        mongoTemplate.upsert(byUser(userId), update.currentDate("updatedAt"), PlannedGrocery.class);
+    }
+
+    // Units and recipe ids end up in field names, where "." and "$" are not allowed
+    private static String fieldKey(String key) {
+        return key.replace('.', '_').replace('$', '_');
+    }
+
+    private static Query byUser(String userId) {
+        return new Query(Criteria.where("_id").is(userId));
+    }
+}
@@ -8,7 +8,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface RecipeRepository extends MongoRepository<Recipe, String> {
+public interface RecipeRepository extends MongoRepository<Recipe, String>, RecipeRepositoryCustom {
     // Custom queries can be added here
 
     Optional<Recipe> findByIdAndIsPublicTrue(String id); // Fetch if it's public
@@ -0,0 +1,59 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.model.FoodOrigin;
+import com.example.recipe.model.MealType;
+import com.example.recipe.model.RelativePrice;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface RecipeRepositoryCustom {
+    // Filters are pushed down to MongoDB, every empty Optional is simply left out of the query
+    List<Recipe> findPublicWithFilters(Optional<RelativePrice> relativePrice,
+                                       Optional<FoodOrigin> foodOrigin,
+                                       Optional<MealType> mealType,
+                                       Optional<Integer> limit);
+
+    /* Single findAndModify : $set of the given fields on the recipe only if it belongs to tenantId.
+       Empty when no recipe matches, the updated recipe otherwise */
+    Optional<Recipe> setFieldsByIdAndTenantId(String id, String tenantId, Map<String, Object> fields);
+
+    // Every recipe owned by tenantId, restricted to the fields of the compact shape
+    List<Recipe> findCompactsByTenantId(String tenantId);
+
+    // Compact fields plus isPublic and tenantId, so visibility can be checked on the result
+    List<Recipe> findCompactsByIds(Collection<String> ids);
+
+    // Recipes with only their ingredients read, for aggregations over many recipes
+    List<Recipe> findIngredientsByIds(Collection<String> ids);
+
+    // Which of the given ids exist, answered from the _id index with a single $in query
+    Set<String> findExistingIds(Collection<String> ids);
+
+    // Backed by a MongoDB cursor, the caller has to close the stream
+    Stream<Recipe> streamPublic();
+
+    // Same cursor with only the fields RecipeMapper.toCompactDto reads
+    Stream<Recipe> streamPublicCompacts();
+
+    // Whole collection (private recipes included) restricted to the given fields, used to build in-memory indexes
+    Stream<Recipe> streamAllWithFields(String... fields);
+
+    /* KEYSET PAGINATION : results are sorted by _id and start strictly after afterId */
+
+    List<Recipe> findPublicPage(Optional<String> afterId, int limit);
+
+    List<Recipe> findPublicWithFiltersPage(Optional<RelativePrice> relativePrice,
+                                           Optional<FoodOrigin> foodOrigin,
+                                           Optional<MealType> mealType,
+                                           Optional<String> afterId,
+                                           int limit);
+
+    // Only the fields of the compact shape are read, ingredients and steps stay in the database
+    List<Recipe> findCompactsByTenantIdPage(String tenantId, Optional<String> afterId, int limit);
+}
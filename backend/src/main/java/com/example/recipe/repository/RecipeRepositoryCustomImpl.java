@@ -0,0 +1,161 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.model.FoodOrigin;
+import com.example.recipe.model.MealType;
+import com.example.recipe.model.RelativePrice;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class RecipeRepositoryCustomImpl implements RecipeRepositoryCustom {
+
+    // Fields read by RecipeMapper.toCompactDto
+    private static final String[] COMPACT_FIELDS = {
+            "name", "description", "relativePrice", "cookTimeMin", "prepTimeMin",
+            "imageUrl", "categoryIds", "mealTypes", "foodOrigins"
+    };
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Recipe> findPublicWithFilters(Optional<RelativePrice> relativePrice,
+                                              Optional<FoodOrigin> foodOrigin,
+                                              Optional<MealType> mealType,
+                                              Optional<Integer> limit) {
+        Query query = new Query(publicWithFilters(relativePrice, foodOrigin, mealType));
+        limit.filter(l -> l > 0).ifPresent(query::limit);
+
+        return mongoTemplate.find(query, Recipe.class);
+    }
+
+    @Override
+    public Optional<Recipe> setFieldsByIdAndTenantId(String id, String tenantId, Map<String, Object> fields) {
+        Query query = new Query(Criteria.where("_id").is(id).and("tenantId").is(tenantId));
+        // mongo rejects an empty update, nothing to write means we only have to read
+        if (fields.isEmpty()) return Optional.ofNullable(mongoTemplate.findOne(query, Recipe.class));
+
+        Update update = new Update();
+        fields.forEach(update::set);
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), Recipe.class));
+    }
+
+    @Override
+    public List<Recipe> findCompactsByTenantId(String tenantId) {
+        Query query = compact(new Query(tenantCriteria(tenantId, Optional.empty()))
+                .with(Sort.by(Sort.Direction.ASC, "_id")));
+        return mongoTemplate.find(query, Recipe.class);
+    }
+
+    @Override
+    public List<Recipe> findCompactsByIds(Collection<String> ids) {
+        if (ids.isEmpty()) return List.of();
+        Query query = compact(new Query(Criteria.where("_id").in(ids)));
+        query.fields().include("isPublic", "tenantId");
+        return mongoTemplate.find(query, Recipe.class);
+    }
+
+    @Override
+    public List<Recipe> findIngredientsByIds(Collection<String> ids) {
+        if (ids.isEmpty()) return List.of();
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include("ingredients");
+        return mongoTemplate.find(query, Recipe.class);
+    }
+
+    @Override
+    public Set<String> findExistingIds(Collection<String> ids) {
+        if (ids.isEmpty()) return Set.of();
+        Query query = new Query(Criteria.where("_id").in(ids));
+        query.fields().include("_id");
+        return mongoTemplate.find(query, Recipe.class)
+                .stream()
+                .map(Recipe::getId)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public Stream<Recipe> streamPublic() {
+        return mongoTemplate.stream(new Query(Criteria.where("isPublic").is(true)), Recipe.class);
+    }
+
+    @Override
+    public Stream<Recipe> streamPublicCompacts() {
+        return mongoTemplate.stream(compact(new Query(Criteria.where("isPublic").is(true))), Recipe.class);
+    }
+
+    @Override
+    public Stream<Recipe> streamAllWithFields(String... fields) {
+        Query query = new Query();
+        query.fields().include(fields);
+        return mongoTemplate.stream(query, Recipe.class);
+    }
+
+    @Override
+    public List<Recipe> findPublicPage(Optional<String> afterId, int limit) {
+        return findPage(Criteria.where("isPublic").is(true), afterId, limit);
+    }
+
+    @Override
+    public List<Recipe> findPublicWithFiltersPage(Optional<RelativePrice> relativePrice,
+                                                  Optional<FoodOrigin> foodOrigin,
+                                                  Optional<MealType> mealType,
+                                                  Optional<String> afterId,
+                                                  int limit) {
+        return findPage(publicWithFilters(relativePrice, foodOrigin, mealType), afterId, limit);
+    }
+
+    @Override
+    public List<Recipe> findCompactsByTenantIdPage(String tenantId, Optional<String> afterId, int limit) {
+        Query query = compact(new Query()
+                .addCriteria(tenantCriteria(tenantId, afterId))
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(limit));
+        return mongoTemplate.find(query, Recipe.class);
+    }
+
+    private Criteria tenantCriteria(String tenantId, Optional<String> afterId) {
+        Criteria criteria = Criteria.where("tenantId").is(tenantId);
+        afterId.ifPresent(id -> criteria.and("_id").gt(id));
+        return criteria;
+    }
+
+    private Query compact(Query query) {
+        query.fields().include(COMPACT_FIELDS);
+        return query;
+    }
+
+    private Criteria publicWithFilters(Optional<RelativePrice> relativePrice,
+                                       Optional<FoodOrigin> foodOrigin,
+                                       Optional<MealType> mealType) {
+        // isPublic always comes first so the query can use one of the compound indexes declared on Recipe
+        Criteria criteria = Criteria.where("isPublic").is(true);
+
+        // foodOrigins and mealTypes are arrays, an equality match on an array field matches any of its elements
+        foodOrigin.ifPresent(origin -> criteria.and("foodOrigins").is(origin));
+        mealType.ifPresent(type -> criteria.and("mealTypes").is(type));
+        relativePrice.ifPresent(price -> criteria.and("relativePrice").is(price));
+        return criteria;
+    }
+
+    private List<Recipe> findPage(Criteria criteria, Optional<String> afterId, int limit) {
+        afterId.ifPresent(id -> criteria.and("_id").gt(id));
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, Recipe.class);
+    }
+}
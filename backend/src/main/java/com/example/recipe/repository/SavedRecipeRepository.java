@@ -0,0 +1,18 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.SavedRecipe;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SavedRecipeRepository extends MongoRepository<SavedRecipe, String>, SavedRecipeRepositoryCustom {
+    boolean existsByUserIdAndRecipeId(String userId, String recipeId);
+    long deleteByUserIdAndRecipeId(String userId, String recipeId);
+    long countByRecipeId(String recipeId);
+    long deleteByRecipeId(String recipeId);
+    List<SavedRecipe> findByUserIdAndRecipeIdIn(String userId, Collection<String> recipeIds);
+    List<SavedRecipe> findByUserIdOrderBySavedAtDesc(String userId);
+}
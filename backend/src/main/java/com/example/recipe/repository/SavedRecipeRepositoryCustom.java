@@ -0,0 +1,12 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.SavedRecipe;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface SavedRecipeRepositoryCustom {
+    /* KEYSET PAGINATION : most recently saved first, starting strictly after (afterSavedAt, afterId) */
+    List<SavedRecipe> findByUserIdPage(String userId, Optional<Instant> afterSavedAt, Optional<String> afterId, int limit);
+}
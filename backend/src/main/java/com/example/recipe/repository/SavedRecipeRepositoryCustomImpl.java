@@ -0,0 +1,34 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.SavedRecipe;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class SavedRecipeRepositoryCustomImpl implements SavedRecipeRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<SavedRecipe> findByUserIdPage(String userId, Optional<Instant> afterSavedAt, Optional<String> afterId, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (afterSavedAt.isPresent() && afterId.isPresent()) {
+            // savedAt isn't unique, _id breaks the ties so no entry is skipped or repeated between pages
+            criteria.orOperator(
+                    Criteria.where("savedAt").lt(afterSavedAt.get()),
+                    Criteria.where("savedAt").is(afterSavedAt.get()).and("_id").lt(afterId.get())
+            );
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "savedAt", "_id"))
+                .limit(limit);
+        return mongoTemplate.find(query, SavedRecipe.class);
+    }
+}
@@ -2,13 +2,18 @@ package com.example.recipe.repository;
 
 import com.example.recipe.entity.User;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends MongoRepository<User, String> {
+public interface UserRepository extends MongoRepository<User, String>, UserRepositoryCustom {
     Optional<User> findByMail(String mail);
+
+    // Only what the JWT filter checks, the grocery and recipe lists are left out
+    @Query(value = "{ '_id': ?0 }", fields = "{ 'tokenVersion': 1, 'role': 1 }")
+    Optional<User> findTokenStateById(String id);
     // Custom queries can be added here
 }
@@ -0,0 +1,35 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.User;
+import com.example.recipe.model.GroceryOperation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public interface UserRepositoryCustom {
+    String RECIPES_IDS = "recipesIds";
+    String GROCERY = "grocery";
+    String GROCERY_PRODUCTS = "grocery.products";
+
+    /* $set of the given fields only, the rest of the document (fields written concurrently, legacy fields
+       this entity doesn't map) is left as is. Empty when the user doesn't exist */
+    Optional<User> setFields(String userId, Map<String, Object> fields);
+
+    // true when recipeId was added, false when it was already in the list or the user doesn't exist
+    boolean addToRecipeList(String userId, String listField, String recipeId);
+
+    // true when recipeId was removed, false when it wasn't in the list or the user doesn't exist
+    boolean removeFromRecipeList(String userId, String listField, String recipeId);
+
+    // false when the user doesn't exist
+    boolean incrementTokenVersion(String userId);
+
+    /* GROCERY : item level updates of the embedded list, the rest of the user document is never rewritten */
+
+    // true when the list changed, false when the item was already there (ADD) or missing (other types) or the user doesn't exist
+    boolean applyGroceryOperation(String userId, GroceryOperation operation);
+
+    // All the operations in one ordered bulk write, returns how many of them changed the list
+    int applyGroceryOperations(String userId, List<GroceryOperation> operations);
+}
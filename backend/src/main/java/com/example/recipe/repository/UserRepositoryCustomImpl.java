@@ -0,0 +1,113 @@
+package com.example.recipe.repository;
+
+import com.example.recipe.entity.User;
+import com.example.recipe.model.Amount;
+import com.example.recipe.model.GroceryIngredient;
+import com.example.recipe.model.GroceryOperation;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.data.util.Pair;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private static final String GROCERY_UPDATED_AT = "grocery.updatedAt";
+    private static final String INGREDIENT_NAME = "ingredientName";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Optional<User> setFields(String userId, Map<String, Object> fields) {
+        Query query = new Query(Criteria.where("_id").is(userId));
+        // mongo rejects an empty update, nothing to write means we only have to read
+        if (fields.isEmpty()) return Optional.ofNullable(mongoTemplate.findOne(query, User.class));
+
+        Update update = new Update();
+        fields.forEach(update::set);
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), User.class));
+    }
+
+    @Override
+    public boolean addToRecipeList(String userId, String listField, String recipeId) {
+        // The membership check is part of the filter, nothing is modified if the id is already there
+        Query query = new Query(Criteria.where("_id").is(userId).and(listField).ne(recipeId));
+        Update update = new Update().addToSet(listField, recipeId);
+        return mongoTemplate.updateFirst(query, update, User.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public boolean removeFromRecipeList(String userId, String listField, String recipeId) {
+        Query query = new Query(Criteria.where("_id").is(userId).and(listField).is(recipeId));
+        Update update = new Update().pull(listField, recipeId);
+        return mongoTemplate.updateFirst(query, update, User.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public boolean incrementTokenVersion(String userId) {
+        Query query = new Query(Criteria.where("_id").is(userId));
+        return mongoTemplate.updateFirst(query, new Update().inc("tokenVersion", 1), User.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public boolean applyGroceryOperation(String userId, GroceryOperation operation) {
+        Pair<Query, UpdateDefinition> update = groceryUpdate(userId, operation);
+        return mongoTemplate.updateFirst(update.getFirst(), update.getSecond(), User.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public int applyGroceryOperations(String userId, List<GroceryOperation> operations) {
+        if (operations.isEmpty()) return 0;
+        // Ordered so the operations on a same item apply in the order they were sent
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, User.class);
+        bulk.updateOne(operations.stream().map(operation -> groceryUpdate(userId, operation)).toList());
+        return bulk.execute().getModifiedCount();
+    }
+
+    /* The item is matched in the filter so the positional $ points to it, an item that is missing
+       (or already there for ADD) matches no document and nothing is written */
+    private Pair<Query, UpdateDefinition> groceryUpdate(String userId, GroceryOperation operation) {
+        String name = operation.getIngredientName();
+        Criteria criteria = Criteria.where("_id").is(userId);
+        Update update = new Update().currentDate(GROCERY_UPDATED_AT);
+
+        switch (operation.getType()) {
+            case ADD -> {
+                criteria.and(GROCERY_PRODUCTS + "." + INGREDIENT_NAME).ne(name);
+                update.push(GROCERY_PRODUCTS, toGroceryIngredient(operation));
+            }
+            case REMOVE -> {
+                criteria.and(GROCERY_PRODUCTS + "." + INGREDIENT_NAME).is(name);
+                update.pull(GROCERY_PRODUCTS, new Document(INGREDIENT_NAME, name));
+            }
+            case SET_BOUGHT -> {
+                criteria.and(GROCERY_PRODUCTS + "." + INGREDIENT_NAME).is(name);
+                update.set(GROCERY_PRODUCTS + ".$.alreadyBought", operation.getAlreadyBought());
+            }
+            case SET_QUANTITY -> {
+                criteria.and(GROCERY_PRODUCTS + "." + INGREDIENT_NAME).is(name);
+                update.set(GROCERY_PRODUCTS + ".$.quantity", operation.getQuantity());
+            }
+        }
+        return Pair.of(new Query(criteria), update);
+    }
+
+    private static GroceryIngredient toGroceryIngredient(GroceryOperation operation) {
+        GroceryIngredient item = new GroceryIngredient();
+        item.setIngredientName(operation.getIngredientName());
+        item.setIngredientType(operation.getIngredientType());
+        item.setQuantity(operation.getQuantity() != null ? operation.getQuantity() : new Amount());
+        item.setAlreadyBought(Boolean.TRUE.equals(operation.getAlreadyBought()));
+        return item;
+    }
+}
@@ -1,12 +1,18 @@
 package com.example.recipe.service;
 
+import com.example.recipe.dto.CalendarDayDto;
+import com.example.recipe.dto.ExpandedMealEventDto;
 import com.example.recipe.dto.MealEvent;
+import com.example.recipe.dto.RecipeDto;
 import com.example.recipe.dto.requests.CalendarRequest;
 import com.example.recipe.entity.CalendarItem;
+import com.example.recipe.exception.DatabaseException;
+import com.example.recipe.exception.InvalidRequestException;
 import com.example.recipe.exception.NoContentException;
 import com.example.recipe.model.MealType;
-import com.example.recipe.repository.CalendarItemRepository;
-import com.example.recipe.repository.RecipeRepository;
+import com.example.recipe.repository.CalendarStore;
+import com.example.recipe.utils.DateRangeUtils;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -18,19 +24,28 @@ import java.util.*;
 public class CalendarService {
 
     private final UserService userService;
-    private final CalendarItemRepository calendarItemRepository;
-    private final RecipeRepository recipeRepository;
-
-    public CalendarService(UserService userService, CalendarItemRepository calendarItemRepository, RecipeRepository recipeRepository) {
+    private final CalendarStore calendarStore;
+    private final RecipeExistenceService recipeExistenceService;
+    private final GroceryService groceryService;
+    private final RecipeService recipeService;
+    private final MealRuleService mealRuleService;
+
+    public CalendarService(UserService userService, CalendarStore calendarStore,
+                           RecipeExistenceService recipeExistenceService, GroceryService groceryService,
+                           RecipeService recipeService, MealRuleService mealRuleService) {
         this.userService = userService;
-        this.calendarItemRepository = calendarItemRepository;
-        this.recipeRepository = recipeRepository;
+        this.calendarStore = calendarStore;
+        this.recipeExistenceService = recipeExistenceService;
+        this.groceryService = groceryService;
+        this.recipeService = recipeService;
+        this.mealRuleService = mealRuleService;
     }
 
 
     public CalendarItem getCalendarItem(String tenantId, LocalDate date) {
         // Find the CalendarItems by tenantId and date (MongoDB query based on the unique index created earlier)
-        Optional<CalendarItem> calendarItems = calendarItemRepository.findByTenantIdAndDate(tenantId, date);
+        // then add the occurrences of the recurring meals
+        Optional<CalendarItem> calendarItems = mealRuleService.withRules(tenantId, calendarStore.findDay(tenantId, date), date);
 
         if (calendarItems.isEmpty()) {
             // Optionally, throw an exception if no records found or return an empty list
@@ -40,115 +55,197 @@ public class CalendarService {
         return calendarItems.get();
     }
 
-    public CalendarItem createCalendarItem(String tenantId, CalendarItem calendarItem) {
+    /* Days without any plan are simply missing from the list, which is sorted by date.
+       Recurring meals are expanded in memory, the range is still a single calendar query */
+    public List<CalendarItem> getCalendarItems(String tenantId, LocalDate from, LocalDate to) {
         userService.CheckUserAllowedToAccessResource(tenantId);
+        DateRangeUtils.validate(from, to);
 
-        // Ensure the tenantId is set to the user's tenantId
-        calendarItem.setTenantId(tenantId);
-        calendarItem.setDate(calendarItem.getDate().atStartOfDay().toLocalDate());
-
-        // Validation if necessary
-        return calendarItemRepository.save(calendarItem);
+        try {
+            return mealRuleService.withRules(tenantId, calendarStore.findRange(tenantId, from, to), from, to);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
     }
 
+    /* Days of the range with the compact recipes of their meals inlined : one range scan for the days,
+       then each distinct recipe is read once, from the cache or in a single projected $in */
+    public List<CalendarDayDto> getExpandedCalendar(String tenantId, LocalDate from, LocalDate to) {
+        List<CalendarItem> calendarItems = getCalendarItems(tenantId, from, to);
+
+        Set<String> recipeIds = new HashSet<>();
+        calendarItems.stream()
+                .filter(item -> item.getMealEvents() != null)
+                .flatMap(item -> item.getMealEvents().stream())
+                .map(MealEvent::getRecipeId)
+                .filter(recipeId -> recipeId != null && !recipeId.isEmpty())
+                .forEach(recipeIds::add);
+        Map<String, RecipeDto> recipesById = recipeService.findVisibleCompactsByIds(recipeIds, tenantId);
+
+        return calendarItems.stream()
+                .map(item -> new CalendarDayDto(
+                        item.getId(),
+                        item.getDate(),
+                        item.getMealEvents() == null ? List.of() : item.getMealEvents().stream()
+                                .map(event -> new ExpandedMealEventDto(
+                                        event.getMealType(),
+                                        event.getEventName(),
+                                        event.getRecipeId(),
+                                        event.getRecipeId() != null ? recipesById.get(event.getRecipeId()) : null))
+                                .toList()))
+                .toList();
+    }
 
-    public void deleteMealEvents(String tenantId, CalendarRequest calendarRequest) {
-        LocalDate date = calendarRequest.getDate();
+    public CalendarItem createCalendarItem(String tenantId, CalendarItem calendarItem) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
+        if (calendarItem.getDate() == null) throw new InvalidRequestException("The calendar item needs a date");
 
-        CalendarItem calendarItem = calendarItemRepository.findByTenantIdAndDate(tenantId, date)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Calendar item not found"));
+        List<MealEvent> mealEvents = lastEventPerMealType(calendarItem.getMealEvents());
+        validateMealEvents(mealEvents);
 
-        List<MealEvent> existingEvents = calendarItem.getMealEvents();
+        try {
+            // Merged like mergeMealPlans, posting a day that already exists updates it instead of hitting the unique index
+            CalendarStore.MergeResult result = calendarStore.mergeMealEvents(tenantId, calendarItem.getDate(), mealEvents);
 
-        if (existingEvents == null || existingEvents.isEmpty()) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No meal events found to delete");
+            List<MealEvent> previousEvents = result.previous().map(CalendarItem::getMealEvents).orElse(List.of());
+            groceryService.onMealEventsChanged(tenantId, previousEvents, result.merged().getMealEvents());
+            return result.merged();
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
         }
+    }
+
+
+    // Matching events are removed by a single atomic update, a concurrent merge of the day is never overwritten
+    public void deleteMealEvents(String tenantId, CalendarRequest calendarRequest) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
+        LocalDate date = calendarRequest.getDate();
 
         List<MealEvent> eventsToDelete = calendarRequest.getMealEvents();
         if (eventsToDelete == null || eventsToDelete.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No meal events provided for deletion");
         }
 
-        int initialSize = existingEvents.size();
-
-        // Remove matching meal events
-        existingEvents.removeIf(existing -> eventsToDelete.stream().anyMatch(toDelete ->
-                existing.getMealType().toString().equalsIgnoreCase(toDelete.getMealType().toString()) &&
-                        (
-                                (toDelete.getRecipeId() != null && toDelete.getRecipeId().equals(existing.getRecipeId())) ||
-                                        (toDelete.getEventName() != null && toDelete.getEventName().equalsIgnoreCase(existing.getEventName()))
-                        )
-        ));
+        CalendarStore.MergeResult result = calendarStore.removeMealEvents(tenantId, date, eventsToDelete)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Calendar item not found"));
 
-        if (existingEvents.size() == initialSize) {
+        List<MealEvent> existingEvents = result.previous().map(CalendarItem::getMealEvents).orElse(List.of());
+        if (existingEvents == null || existingEvents.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No meal events found to delete");
+        }
+        if (result.merged().getMealEvents().size() == existingEvents.size()) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No matching meal events found to delete");
         }
 
-        calendarItem.setMealEvents(existingEvents);
-        calendarItemRepository.save(calendarItem);
+        groceryService.onMealEventsChanged(tenantId, existingEvents, result.merged().getMealEvents());
     }
 
 
 
 
     public CalendarItem mergeMealPlans(String tenantId, CalendarRequest updateRequest) {
-        // Convert date string to LocalDate
-        LocalDate date = updateRequest.getDate();
-
-        // Find existing calendar item or create new one
-        CalendarItem calendarItem = calendarItemRepository.findByTenantIdAndDate(tenantId, date)
-                .orElseGet(() -> {
-                    CalendarItem newItem = new CalendarItem();
-                    newItem.setTenantId(tenantId);
-                    newItem.setDate(date);
-                    return newItem;
-                });
-
-        // Get existing meal events (could be null or empty)
-        List<MealEvent> existingMealEvents = calendarItem.getMealEvents();
-        if (existingMealEvents == null) {
-            existingMealEvents = new ArrayList<>();
-        }
-
-        // Get updated meal events from request
-        List<MealEvent> updatedMealEvents = updateRequest.getMealEvents();
+        userService.CheckUserAllowedToAccessResource(tenantId);
 
-        // Validate new meal events
+        List<MealEvent> updatedMealEvents = lastEventPerMealType(updateRequest.getMealEvents());
         validateMealEvents(updatedMealEvents);
 
-        // Merge logic: replace existing event with same mealType or add new ones
-        Map<String, MealEvent> mergedMap = new HashMap<>();
+        try {
+            // Replace existing event with same mealType or add new ones, in a single atomic upsert
+            // so two devices editing the same day don't overwrite each other's other meals
+            CalendarStore.MergeResult result =
+                    calendarStore.mergeMealEvents(tenantId, updateRequest.getDate(), updatedMealEvents);
+
+            List<MealEvent> previousEvents = result.previous().map(CalendarItem::getMealEvents).orElse(List.of());
+            groceryService.onMealEventsChanged(tenantId, previousEvents, result.merged().getMealEvents());
+            return result.merged();
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
 
-        // Put existing ones in map
-        for (MealEvent event : existingMealEvents) {
-            mergedMap.put(event.getMealType().toString(), event);
+    /* A whole week (or any set of days) merged at once, see mergeMealPlans(String, SortedMap) */
+    public List<CalendarItem> mergeMealPlansBatch(String tenantId, List<CalendarRequest> updateRequests) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
+        if (updateRequests.isEmpty()) return List.of();
+
+        TreeMap<LocalDate, List<MealEvent>> eventsByDate = new TreeMap<>();
+        for (CalendarRequest request : updateRequests) {
+            if (request.getDate() == null) throw new InvalidRequestException("Every day of the batch needs a date");
+            // The same day sent twice is merged like two successive requests
+            List<MealEvent> dayEvents = new ArrayList<>(eventsByDate.getOrDefault(request.getDate(), List.of()));
+            dayEvents.addAll(request.getMealEvents() != null ? request.getMealEvents() : List.of());
+            eventsByDate.put(request.getDate(), lastEventPerMealType(dayEvents));
         }
+        return mergeMealPlans(tenantId, eventsByDate);
+    }
+
 
-        // Overwrite or add updated ones
-        for (MealEvent newEvent : updatedMealEvents) {
-            mergedMap.put(newEvent.getMealType().toString(), newEvent);
+    // Days already grouped by date with at most one event per mealType, as built by the batch or the generator
+    public List<CalendarItem> mergeMealPlans(String tenantId, SortedMap<LocalDate, List<MealEvent>> eventsByDate) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
+        if (eventsByDate.isEmpty()) return List.of();
+
+        // A single existence query for the recipes of every day
+        validateMealEvents(eventsByDate.values().stream().flatMap(List::stream).toList());
+
+        LocalDate from = eventsByDate.firstKey();
+        LocalDate to = eventsByDate.lastKey();
+        DateRangeUtils.validate(from, to);
+
+        try {
+            // One range read for the returned items, then every day merged on the server in one bulk write
+            Map<LocalDate, CalendarItem> previousByDate = new HashMap<>();
+            calendarStore.findRange(tenantId, from, to)
+                    .forEach(item -> previousByDate.put(item.getDate(), item));
+
+            calendarStore.mergeMealEvents(tenantId, eventsByDate);
+
+            List<CalendarItem> mergedItems = new ArrayList<>();
+            eventsByDate.forEach((date, events) -> {
+                CalendarItem previous = previousByDate.get(date);
+                CalendarItem merged = new CalendarItem();
+                if (previous != null) merged.setId(previous.getId());
+                merged.setTenantId(tenantId);
+                merged.setDate(date);
+                merged.setMealEvents(CalendarStore.merge(previous != null ? previous.getMealEvents() : null, events));
+                mergedItems.add(merged);
+            });
+
+            /* The bulk write returns no pre-images and the days read above may have changed since,
+               so the planned grocery is rebuilt on its next read rather than patched from a stale snapshot */
+            groceryService.onMealEventsReplaced(tenantId);
+            return mergedItems;
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
         }
+    }
 
-        // Set merged list back to calendar item
-        calendarItem.setMealEvents(new ArrayList<>(mergedMap.values()));
 
-        // Save and return
-        return calendarItemRepository.save(calendarItem);
+    // Like the previous HashMap merge : when a mealType is sent twice the last event wins
+    private static List<MealEvent> lastEventPerMealType(List<MealEvent> mealEvents) {
+        if (mealEvents == null) throw new InvalidRequestException("No meal events provided");
+        Map<MealType, MealEvent> byType = new LinkedHashMap<>();
+        for (MealEvent event : mealEvents) {
+            if (event.getMealType() == null) throw new InvalidRequestException("Every meal event needs a mealType");
+            byType.remove(event.getMealType());
+            byType.put(event.getMealType(), event);
+        }
+        return new ArrayList<>(byType.values());
     }
 
 
     private void validateMealEvents(List<MealEvent> mealEvents) {
+        List<String> recipeIds = new ArrayList<>();
         for (MealEvent event : mealEvents) {
             // Validate meal type
             if (!isValidMealType(event.getMealType().toString())) {
                 throw new IllegalArgumentException("Invalid meal type: " + event.getMealType());
             }
 
-            // If recipeId is provided, validate it exists
+            // If recipeId is provided, it is validated below with the others
             if (event.getRecipeId() != null && !event.getRecipeId().isEmpty()) {
-                if (!recipeRepository.existsById(event.getRecipeId())) {
-                    throw new IllegalArgumentException("Recipe not found with id: " + event.getRecipeId());
-                }
+                recipeIds.add(event.getRecipeId());
             }
 
             // If no recipeId, ensure eventName is provided
@@ -157,6 +254,12 @@ public class CalendarService {
                 throw new IllegalArgumentException("Either recipeId or eventName must be provided");
             }
         }
+
+        // One query for all the recipes of the request
+        Set<String> missingIds = recipeExistenceService.findMissing(recipeIds);
+        if (!missingIds.isEmpty()) {
+            throw new IllegalArgumentException("Recipe not found with id: " + missingIds.iterator().next());
+        }
     }
 
     private boolean isValidMealType(String mealType) {
@@ -0,0 +1,60 @@
+package com.example.recipe.service;
+
+import com.example.recipe.cache.LookupCache;
+import com.example.recipe.entity.lookup.Category;
+import com.example.recipe.repository.CategoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@Slf4j
+public class CategoryService {
+
+    private final CategoryRepository categoryRepository;
+    private final LookupCache<Category> cache;
+
+    public CategoryService(CategoryRepository categoryRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${application.cache.lookup.max-entries}") int maxEntries) {
+        this.categoryRepository = categoryRepository;
+        this.cache = new LookupCache<>("categories", Category::getId, maxEntries, meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            cache.warmUp(categoryRepository.findAll());
+            log.info("Category cache warmed up");
+        } catch (DataAccessException e) {
+            // The cache still works as a read-through cache, it will just start cold
+            log.error("Could not warm up the category cache", e);
+        }
+    }
+
+    public List<Category> findAll() {
+        return cache.findAll(categoryRepository::findAll);
+    }
+
+    public Optional<Category> findById(String id) {
+        return cache.get(id, categoryRepository::findById);
+    }
+
+    public Category save(Category category) {
+        Category saved = categoryRepository.save(category);
+        cache.put(saved);
+        return saved;
+    }
+
+    public void deleteById(String id) {
+        categoryRepository.deleteById(id);
+        cache.evict(id);
+    }
+}
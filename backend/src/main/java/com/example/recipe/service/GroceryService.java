@@ -0,0 +1,277 @@
+package com.example.recipe.service;
+
+import com.example.recipe.dto.GroceryListDto;
+import com.example.recipe.dto.MealEvent;
+import com.example.recipe.entity.PlannedGrocery;
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.entity.lookup.Ingredient;
+import com.example.recipe.exception.DatabaseException;
+import com.example.recipe.exception.NoContentException;
+import com.example.recipe.model.Amount;
+import com.example.recipe.model.Grocery;
+import com.example.recipe.model.GroceryIngredient;
+import com.example.recipe.model.IngredientType;
+import com.example.recipe.model.RecipeIngredient;
+import com.example.recipe.repository.CalendarStore;
+import com.example.recipe.repository.PlannedGroceryRepository;
+import com.example.recipe.repository.RecipeRepository;
+import com.example.recipe.repository.UserRepository;
+import com.example.recipe.utils.DateRangeUtils;
+import com.example.recipe.utils.UnitUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GroceryService {
+
+    private static final String OTHER_TYPE = "OTHER";
+    private static final Comparator<GroceryIngredient> BY_NAME = Comparator
+            .comparing(GroceryIngredient::getIngredientName, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(item -> item.getQuantity().getUnit());
+
+    private final UserService userService;
+    private final CalendarStore calendarStore;
+    private final RecipeRepository recipeRepository;
+    private final IngredientService ingredientService;
+    private final UserRepository userRepository;
+    private final PlannedGroceryRepository plannedGroceryRepository;
+    private final MealRuleService mealRuleService;
+
+    @Value("${application.grocery.rule-horizon-days}")
+    private int ruleHorizonDays;
+
+    /* The stored list (manual items) plus plannedProducts, the totals of the recipes planned in the calendar.
+       Planned totals are read from the materialized aggregate, the calendar is only scanned when it is stale.
+       Recurring meals have no end, their occurrences of the next rule-horizon-days are added on top */
+    public Grocery getGrocery(String userId) {
+        userService.CheckUserAllowedToAccessResource(userId);
+
+        try {
+            Grocery grocery = userRepository.findById(userId)
+                    .map(user -> user.getGrocery() != null ? user.getGrocery() : new Grocery())
+                    .orElseThrow(() -> new NoContentException("User not found"));
+
+            Optional<PlannedGrocery> current = plannedGroceryRepository.findById(userId);
+            if (current.isPresent() && current.get().isStale() && rebuildPlannedTotals(userId)) {
+                current = plannedGroceryRepository.findById(userId);
+            }
+            Map<String, Map<String, Integer>> totals = current.map(planned -> positive(planned.getTotals())).orElseGet(HashMap::new);
+            addRuleOccurrences(userId, totals);
+            if (current.isEmpty() && totals.isEmpty()) return grocery;
+
+            Set<String> bought = current.map(PlannedGrocery::getBoughtIngredientIds).orElse(Set.of());
+            Map<String, Ingredient> ingredientsById = ingredientService.findAllByIds(totals.keySet())
+                    .stream()
+                    .collect(Collectors.toMap(Ingredient::getId, Function.identity()));
+            List<GroceryIngredient> plannedProducts = new ArrayList<>();
+            groupByType(totals, ingredientsById).values().forEach(plannedProducts::addAll);
+            plannedProducts.forEach(item -> item.setAlreadyBought(bought.contains(item.getIngredientId())));
+            grocery.setPlannedProducts(plannedProducts);
+            return grocery;
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
+
+    public void setPlannedBought(String userId, String ingredientId, boolean alreadyBought) {
+        userService.CheckUserAllowedToAccessResource(userId);
+
+        try {
+            plannedGroceryRepository.setBought(userId, ingredientId, alreadyBought);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
+
+    /* Called by CalendarService after a day's meal events changed : only the recipes whose planned count
+       differs between before and after are read, and their ingredients applied as one signed $inc.
+       A deleted recipe has no ingredients left to subtract, so the totals are flagged for a rebuild instead */
+    public void onMealEventsChanged(String userId, List<MealEvent> before, List<MealEvent> after) {
+        Map<String, Integer> deltaByRecipeId = countPlannedRecipes(after);
+        countPlannedRecipes(before).forEach((recipeId, times) -> deltaByRecipeId.merge(recipeId, -times, Integer::sum));
+        deltaByRecipeId.values().removeIf(delta -> delta == 0);
+        if (deltaByRecipeId.isEmpty()) return;
+
+        try {
+            List<Recipe> recipes = recipeRepository.findIngredientsByIds(deltaByRecipeId.keySet());
+            plannedGroceryRepository.incrementTotals(userId, sumIngredients(recipes, deltaByRecipeId), deltaByRecipeId);
+            if (recipes.size() < deltaByRecipeId.size()) plannedGroceryRepository.markStale(userId);
+        } catch (DataAccessException e) {
+            // The calendar change is already saved, the next read rebuilds the totals
+            log.error("Planned grocery of user {} could not be updated, it needs a rebuild", userId, e);
+            try {
+                plannedGroceryRepository.markStale(userId);
+            } catch (DataAccessException markFailed) {
+                log.error("Planned grocery of user {} could not be flagged stale", userId, markFailed);
+            }
+        }
+    }
+
+
+    // Called after bulk calendar writes, which return no previous state to compute a delta from
+    public void onMealEventsReplaced(String userId) {
+        try {
+            plannedGroceryRepository.markStale(userId);
+        } catch (DataAccessException e) {
+            log.error("Planned grocery of user {} could not be flagged stale", userId, e);
+        }
+    }
+
+
+    // Recomputes the totals from the whole calendar
+    public void rebuildPlanned(String userId) {
+        userService.CheckUserAllowedToAccessResource(userId);
+
+        try {
+            rebuildPlannedTotals(userId);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
+    /* False when a meal event changed while the calendar was read : the totals stay stale
+       and the next read tries again, rather than losing that change */
+    private boolean rebuildPlannedTotals(String userId) {
+        long version = plannedGroceryRepository.currentVersion(userId);
+        Map<String, Integer> plannedTimesByRecipeId = countPlannedRecipes(
+                calendarStore.findPlannedRecipes(userId)
+                        .stream()
+                        .filter(item -> item.getMealEvents() != null)
+                        .flatMap(item -> item.getMealEvents().stream())
+                        .toList());
+        List<Recipe> recipes = recipeRepository.findIngredientsByIds(plannedTimesByRecipeId.keySet());
+        boolean replaced = plannedGroceryRepository.replaceTotals(userId, version,
+                sumIngredients(recipes, plannedTimesByRecipeId), plannedTimesByRecipeId);
+        if (!replaced) log.info("Planned grocery of user {} changed during its rebuild, left stale", userId);
+        return replaced;
+    }
+
+    /* Ingredients of every recipe planned between from and to (both included), recurring meals included,
+       summed per ingredient and unit. Three reads whatever the size of the range : the calendar, the recipes, and the ingredients missing from the cache */
+    public GroceryListDto fromCalendar(String userId, LocalDate from, LocalDate to) {
+        userService.CheckUserAllowedToAccessResource(userId);
+        DateRangeUtils.validate(from, to);
+
+        try {
+            Map<String, Integer> plannedTimesByRecipeId = countPlannedRecipes(
+                    mealRuleService.withRules(userId, calendarStore.findPlannedRecipes(userId, from, to), from, to)
+                            .stream()
+                            .filter(item -> item.getMealEvents() != null)
+                            .flatMap(item -> item.getMealEvents().stream())
+                            .toList());
+            List<Recipe> recipes = recipeRepository.findIngredientsByIds(plannedTimesByRecipeId.keySet());
+
+            Map<String, Map<String, Integer>> totals = sumIngredients(recipes, plannedTimesByRecipeId);
+            Map<String, Ingredient> ingredientsById = ingredientService.findAllByIds(totals.keySet())
+                    .stream()
+                    .collect(Collectors.toMap(Ingredient::getId, Function.identity()));
+
+            return new GroceryListDto(from, to, groupByType(totals, ingredientsById));
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
+    // Ingredients of the rule occurrences from today on, the days already planned keep their own meals
+    private void addRuleOccurrences(String userId, Map<String, Map<String, Integer>> totals) {
+        LocalDate from = LocalDate.now();
+        LocalDate to = from.plusDays(ruleHorizonDays - 1L);
+        Map<String, Integer> occurrencesByRecipeId = countPlannedRecipes(
+                mealRuleService.ruleOccurrences(userId, calendarStore.findPlannedRecipes(userId, from, to), from, to));
+        if (occurrencesByRecipeId.isEmpty()) return;
+
+        List<Recipe> recipes = recipeRepository.findIngredientsByIds(occurrencesByRecipeId.keySet());
+        sumIngredients(recipes, occurrencesByRecipeId).forEach((ingredientId, totalsByUnit) -> totalsByUnit.forEach((unit, total) ->
+                totals.computeIfAbsent(ingredientId, id -> new HashMap<>()).merge(unit, total, Integer::sum)));
+    }
+
+    // A recipe planned twice needs its ingredients twice
+    static Map<String, Integer> countPlannedRecipes(List<MealEvent> mealEvents) {
+        Map<String, Integer> plannedTimes = new HashMap<>();
+        if (mealEvents == null) return plannedTimes;
+        for (MealEvent event : mealEvents) {
+            if (event.getRecipeId() == null || event.getRecipeId().isBlank()) continue;
+            plannedTimes.merge(event.getRecipeId(), 1, Integer::sum);
+        }
+        return plannedTimes;
+    }
+
+    // Totals can reach 0 or less once meals are removed, they're kept in the document but not listed
+    private static Map<String, Map<String, Integer>> positive(Map<String, Map<String, Integer>> totals) {
+        Map<String, Map<String, Integer>> positive = new HashMap<>();
+        totals.forEach((ingredientId, totalsByUnit) -> totalsByUnit.forEach((unit, total) -> {
+            if (total > 0) positive.computeIfAbsent(ingredientId, id -> new HashMap<>()).put(unit, total);
+        }));
+        return positive;
+    }
+
+    // ingredientId -> base unit -> total, amounts in units that can't be converted into each other stay apart
+    static Map<String, Map<String, Integer>> sumIngredients(List<Recipe> recipes, Map<String, Integer> plannedTimesByRecipeId) {
+        Map<String, Map<String, Integer>> totals = new HashMap<>();
+        for (Recipe recipe : recipes) {
+            if (recipe.getIngredients() == null) continue;
+            int times = plannedTimesByRecipeId.getOrDefault(recipe.getId(), 0);
+            for (RecipeIngredient ingredient : recipe.getIngredients()) {
+                if (ingredient.getIngredientId() == null) continue;
+                Amount base = UnitUtils.toBaseUnit(ingredient.getAmount());
+                totals.computeIfAbsent(ingredient.getIngredientId(), id -> new HashMap<>())
+                        .merge(base.getUnit(), base.getValue() * times, Integer::sum);
+            }
+        }
+        return totals;
+    }
+
+    private static Map<String, List<GroceryIngredient>> groupByType(Map<String, Map<String, Integer>> totals,
+                                                                    Map<String, Ingredient> ingredientsById) {
+        Map<IngredientType, List<GroceryIngredient>> byType = new EnumMap<>(IngredientType.class);
+        List<GroceryIngredient> untyped = new ArrayList<>();
+
+        totals.forEach((ingredientId, totalsByUnit) -> {
+            Ingredient ingredient = ingredientsById.get(ingredientId);
+            if (ingredient == null) {
+                log.warn("Ingredient {} used by a planned recipe is not in the catalog", ingredientId);
+                return;
+            }
+            List<GroceryIngredient> group = ingredient.getType() == null
+                    ? untyped
+                    : byType.computeIfAbsent(ingredient.getType(), type -> new ArrayList<>());
+            totalsByUnit.forEach((unit, value) -> group.add(toGroceryIngredient(ingredient, unit, value)));
+        });
+
+        Map<String, List<GroceryIngredient>> grouped = new LinkedHashMap<>();
+        byType.forEach((type, items) -> {
+            items.sort(BY_NAME);
+            grouped.put(type.name(), items);
+        });
+        if (!untyped.isEmpty()) {
+            untyped.sort(BY_NAME);
+            grouped.put(OTHER_TYPE, untyped);
+        }
+        return grouped;
+    }
+
+    private static GroceryIngredient toGroceryIngredient(Ingredient ingredient, String unit, int value) {
+        Amount total = new Amount();
+        total.setValue(value);
+        total.setUnit(unit);
+
+        GroceryIngredient item = new GroceryIngredient();
+        item.setIngredientId(ingredient.getId());
+        item.setIngredientName(ingredient.getName());
+        item.setIngredientType(ingredient.getType() != null ? ingredient.getType().name() : null);
+        item.setQuantity(UnitUtils.toDisplayUnit(total));
+        return item;
+    }
+}
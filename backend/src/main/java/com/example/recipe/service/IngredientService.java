@@ -0,0 +1,114 @@
+package com.example.recipe.service;
+
+import com.example.recipe.cache.LookupCache;
+import com.example.recipe.entity.lookup.Ingredient;
+import com.example.recipe.exception.DatabaseException;
+import com.example.recipe.index.IngredientSuggestIndex;
+import com.example.recipe.model.IngredientType;
+import com.example.recipe.repository.IngredientRepository;
+import com.example.recipe.utils.TextUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+@Service
+@Slf4j
+public class IngredientService {
+
+    private final IngredientRepository ingredientRepository;
+    // Everything derived from the whole catalog, rebuilt and published together on each catalog change
+    private record CatalogIndexes(IngredientSuggestIndex suggestIndex, Map<String, String> idByName, Set<String> ids) {
+
+        private static CatalogIndexes build(List<Ingredient> ingredients) {
+            Map<String, String> idByName = new HashMap<>();
+            Set<String> ids = new HashSet<>();
+            for (Ingredient ingredient : ingredients) {
+                if (ingredient.getId() == null) continue;
+                ids.add(ingredient.getId());
+                if (ingredient.getName() != null) idByName.putIfAbsent(TextUtils.fold(ingredient.getName()), ingredient.getId());
+            }
+            return new CatalogIndexes(IngredientSuggestIndex.build(ingredients), Map.copyOf(idByName), Set.copyOf(ids));
+        }
+    }
+
+    private final LookupCache<Ingredient> cache;
+    private volatile CatalogIndexes catalogIndexes = CatalogIndexes.build(List.of());
+
+    public IngredientService(IngredientRepository ingredientRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${application.cache.lookup.max-entries}") int maxEntries) {
+        this.ingredientRepository = ingredientRepository;
+        this.cache = new LookupCache<>("ingredients", Ingredient::getId, maxEntries, meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            List<Ingredient> ingredients = ingredientRepository.findAll();
+            cache.warmUp(ingredients);
+            refreshCatalogIndexes();
+            log.info("Ingredient cache warmed up");
+        } catch (DataAccessException e) {
+            // The cache still works as a read-through cache, it will just start cold
+            log.error("Could not warm up the ingredient cache", e);
+        }
+    }
+
+    public List<Ingredient> findAll() {
+        return cache.findAll(ingredientRepository::findAll);
+    }
+
+    public Optional<Ingredient> findById(String id) {
+        return cache.get(id, ingredientRepository::findById);
+    }
+
+    public List<Ingredient> findAllByIds(Collection<String> ids) {
+        try {
+            return cache.getAll(ids, ingredientRepository::findAllById);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
+    public List<Ingredient> suggest(String prefix, Optional<IngredientType> type, int limit) {
+        return catalogIndexes.suggestIndex().suggest(prefix, type, limit);
+    }
+
+    /* The catalog is small, rebuilding the whole trie is cheaper than keeping a mutable one thread safe.
+       Rebuilds are serialized : the last one to run reads the catalog after every change before it,
+       so an older trie can't be published over a newer one */
+    private synchronized void refreshCatalogIndexes() {
+        catalogIndexes = CatalogIndexes.build(findAll());
+    }
+
+    /* Ideas are typed by hand, each entry is either an ingredient id or an ingredient name.
+       Resolved against the indexes built on the last catalog change, nothing is read per request */
+    public List<String> resolveIds(Collection<String> idsOrNames) {
+        CatalogIndexes indexes = catalogIndexes;
+        return idsOrNames.stream()
+                .filter(Objects::nonNull)
+                .map(value -> indexes.ids().contains(value) ? value : indexes.idByName().get(TextUtils.fold(value)))
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+    }
+
+    public Ingredient save(Ingredient ingredient) {
+        Ingredient saved = ingredientRepository.save(ingredient);
+        cache.put(saved);
+        refreshCatalogIndexes();
+        return saved;
+    }
+
+    public void deleteById(String id) {
+        ingredientRepository.deleteById(id);
+        cache.evict(id);
+        refreshCatalogIndexes();
+    }
+}
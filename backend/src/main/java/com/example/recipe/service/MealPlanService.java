@@ -0,0 +1,152 @@
+package com.example.recipe.service;
+
+import com.example.recipe.dto.GeneratedMealPlanDto;
+import com.example.recipe.dto.MealEvent;
+import com.example.recipe.dto.MealPlanGenerationDto;
+import com.example.recipe.entity.CalendarItem;
+import com.example.recipe.entity.User;
+import com.example.recipe.exception.DatabaseException;
+import com.example.recipe.exception.InvalidRequestException;
+import com.example.recipe.index.RecipePlanningIndex;
+import com.example.recipe.index.RecipePlanningIndex.PlannableRecipe;
+import com.example.recipe.model.FoodOrigin;
+import com.example.recipe.model.MealType;
+import com.example.recipe.model.RelativePrice;
+import com.example.recipe.planner.MealPlanSearch;
+import com.example.recipe.repository.CalendarStore;
+import com.example.recipe.repository.UserRepository;
+import com.example.recipe.utils.DateRangeUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/*
+ * Fills the empty meal slots of a date range with recipes. Meals already planned (stored or recurring)
+ * are kept and count for the shared ingredients and the no-repeat window, whatever the origin and price filters.
+ * The meals planned up to noRepeatDays - 1 days before and after the range only count for the no-repeat window.
+ * The search runs on the in-memory planning index, mongo is only read for the calendar and the user.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MealPlanService {
+
+    private final CalendarService calendarService;
+    private final UserRepository userRepository;
+    private final RecipePlanningIndex recipePlanningIndex;
+    private final MealPlanSearch mealPlanSearch;
+
+
+    public GeneratedMealPlanDto generate(String tenantId, MealPlanGenerationDto request) {
+        validate(request);
+        LocalDate from = request.getFrom();
+
+        // Also checks the ownership and the range
+        List<CalendarItem> plannedDays = new ArrayList<>(calendarService.getCalendarItems(tenantId, from, request.getTo()));
+        int margin = request.getNoRepeatDays() - 1;
+        if (margin > 0) {
+            plannedDays.addAll(calendarService.getCalendarItems(tenantId, from.minusDays(margin), from.minusDays(1)));
+            plannedDays.addAll(calendarService.getCalendarItems(tenantId, request.getTo().plusDays(1), request.getTo().plusDays(margin)));
+        }
+
+        List<String> recipesIds;
+        try {
+            recipesIds = userRepository.findById(tenantId).map(User::getRecipesIds).orElse(List.of());
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+
+        RecipePlanningIndex.Snapshot snapshot = recipePlanningIndex.snapshot(tenantId, recipesIds == null ? List.of() : recipesIds);
+        // Every visible recipe can be a fixed meal, only those passing the filters can fill a slot
+        List<PlannableRecipe> recipes = snapshot.recipes();
+        BitSet selectable = new BitSet(recipes.size());
+        Map<String, Integer> indexByRecipeId = new HashMap<>();
+        for (int i = 0; i < recipes.size(); i++) {
+            PlannableRecipe recipe = recipes.get(i);
+            indexByRecipeId.put(recipe.id(), i);
+            if ((request.getFoodOrigins().isEmpty() || recipe.hasAnyOrigin(request.getFoodOrigins()))
+                    && (request.getRelativePrices().isEmpty() || request.getRelativePrices().contains(recipe.relativePrice()))) {
+                selectable.set(i);
+            }
+        }
+
+        Map<LocalDate, CalendarItem> plannedByDate = new HashMap<>();
+        plannedDays.forEach(item -> plannedByDate.put(item.getDate(), item));
+
+        List<MealPlanSearch.Slot> slots = new ArrayList<>();
+        List<MealPlanSearch.FixedMeal> fixedMeals = new ArrayList<>();
+        int days = (int) ChronoUnit.DAYS.between(from, request.getTo()) + 1;
+        for (int day = -margin; day < days + margin; day++) {
+            CalendarItem planned = plannedByDate.get(from.plusDays(day));
+            List<MealEvent> plannedEvents = planned != null && planned.getMealEvents() != null ? planned.getMealEvents() : List.of();
+
+            Set<MealType> plannedTypes = EnumSet.noneOf(MealType.class);
+            for (MealEvent event : plannedEvents) {
+                plannedTypes.add(event.getMealType());
+                Integer recipe = event.getRecipeId() != null ? indexByRecipeId.get(event.getRecipeId()) : null;
+                if (recipe != null) fixedMeals.add(new MealPlanSearch.FixedMeal(day, recipe));
+            }
+            if (day < 0 || day >= days) continue;
+            for (MealType mealType : EnumSet.copyOf(request.getMealTypes())) {
+                if (!plannedTypes.contains(mealType)) slots.add(new MealPlanSearch.Slot(day, mealType));
+            }
+        }
+        if (slots.isEmpty()) return new GeneratedMealPlanDto(List.of(), 0, 0, 0, false);
+
+        MealPlanSearch.Result result = mealPlanSearch.search(new MealPlanSearch.Problem(
+                recipes, selectable, snapshot.ingredientCount(), days, slots, fixedMeals, request.getNoRepeatDays()));
+
+        TreeMap<LocalDate, List<MealEvent>> generated = new TreeMap<>();
+        for (int i = 0; i < slots.size(); i++) {
+            int recipe = result.recipeBySlot()[i];
+            if (recipe < 0) continue;
+
+            MealEvent event = new MealEvent();
+            event.setMealType(slots.get(i).mealType());
+            event.setRecipeId(recipes.get(recipe).id());
+            generated.computeIfAbsent(from.plusDays(slots.get(i).day()), date -> new ArrayList<>()).add(event);
+        }
+
+        List<CalendarItem> generatedDays = request.isDryRun()
+                ? preview(tenantId, generated, plannedByDate)
+                : calendarService.mergeMealPlans(tenantId, generated);
+        return new GeneratedMealPlanDto(generatedDays, slots.size() - result.emptySlots(), result.emptySlots(),
+                result.distinctIngredients(), !request.isDryRun());
+    }
+
+    // What the days would look like once merged, ids are those of the days already stored
+    private static List<CalendarItem> preview(String tenantId, SortedMap<LocalDate, List<MealEvent>> generated,
+                                              Map<LocalDate, CalendarItem> plannedByDate) {
+        List<CalendarItem> days = new ArrayList<>();
+        generated.forEach((date, events) -> {
+            CalendarItem planned = plannedByDate.get(date);
+            CalendarItem day = new CalendarItem();
+            day.setId(planned != null ? planned.getId() : null);
+            day.setTenantId(tenantId);
+            day.setDate(date);
+            day.setMealEvents(CalendarStore.merge(
+                    planned != null && planned.getMealEvents() != null ? planned.getMealEvents() : List.of(), events));
+            days.add(day);
+        });
+        return days;
+    }
+
+    private static void validate(MealPlanGenerationDto request) {
+        if (request.getFrom() == null || request.getTo() == null) throw new InvalidRequestException("from and to are required");
+        DateRangeUtils.validate(request.getFrom(), request.getTo());
+        if (request.getMealTypes() == null || request.getMealTypes().isEmpty()) {
+            throw new InvalidRequestException("At least one mealType is required");
+        }
+        if (request.getNoRepeatDays() < 1) throw new InvalidRequestException("noRepeatDays must be at least 1");
+        if (request.getNoRepeatDays() > DateRangeUtils.MAX_RANGE_DAYS) {
+            throw new InvalidRequestException("noRepeatDays can't be more than " + DateRangeUtils.MAX_RANGE_DAYS);
+        }
+        if (request.getFoodOrigins() == null) request.setFoodOrigins(EnumSet.noneOf(FoodOrigin.class));
+        if (request.getRelativePrices() == null) request.setRelativePrices(EnumSet.noneOf(RelativePrice.class));
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.recipe.service;
+
+import com.example.recipe.cache.MealRuleCache;
+import com.example.recipe.dto.MealEvent;
+import com.example.recipe.entity.CalendarItem;
+import com.example.recipe.entity.MealRule;
+import com.example.recipe.exception.DatabaseException;
+import com.example.recipe.exception.InvalidRequestException;
+import com.example.recipe.exception.NoContentException;
+import com.example.recipe.model.MealType;
+import com.example.recipe.repository.MealRuleRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/*
+ * Recurring meals stored once per user instead of one CalendarItem per day.
+ * Rules are expanded when the calendar is read : a stored day keeps its own events and a rule only fills
+ * the meal types the day doesn't already have, so editing one day of a series is a normal calendar write.
+ * Skipping a single occurrence is an exception on the rule.
+ */
+@Service
+@RequiredArgsConstructor
+public class MealRuleService {
+
+    private final UserService userService;
+    private final MealRuleRepository mealRuleRepository;
+    private final MealRuleCache mealRuleCache;
+    private final RecipeExistenceService recipeExistenceService;
+
+
+    public List<MealRule> getRules(String tenantId) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
+        return findRules(tenantId);
+    }
+
+    public MealRule createRule(String tenantId, MealRule rule) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
+        validateRule(rule);
+
+        rule.setId(UUID.randomUUID().toString());
+        rule.setTenantId(tenantId);
+        if (rule.getExceptions() == null) rule.setExceptions(new HashSet<>());
+        if (rule.getDaysOfWeek() == null) rule.setDaysOfWeek(new HashSet<>());
+
+        try {
+            MealRule saved = mealRuleRepository.save(rule);
+            mealRuleCache.evict(tenantId);
+            return saved;
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
+    public void deleteRule(String tenantId, String ruleId) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
+
+        try {
+            if (mealRuleRepository.deleteByIdAndTenantId(ruleId, tenantId) == 0) {
+                throw new NoContentException("Meal rule not found");
+            }
+            mealRuleCache.evict(tenantId);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
+    // Skips the occurrence of the given day, the rest of the series is untouched
+    public MealRule addException(String tenantId, String ruleId, LocalDate date) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
+        if (date == null) throw new InvalidRequestException("A date is required");
+
+        try {
+            // $addToSet : two exceptions added at the same time both stay
+            MealRule saved = mealRuleRepository.addException(ruleId, tenantId, date)
+                    .orElseThrow(() -> new NoContentException("Meal rule not found"));
+            mealRuleCache.evict(tenantId);
+            return saved;
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
+    /* The stored days of [from, to] plus the rule occurrences, sorted by date. Days only made of rule
+       occurrences are virtual : they have no id until something is written on them */
+    public List<CalendarItem> withRules(String tenantId, List<CalendarItem> storedDays, LocalDate from, LocalDate to) {
+        Map<LocalDate, CalendarItem> storedByDate = new HashMap<>();
+        storedDays.forEach(item -> storedByDate.put(item.getDate(), item));
+        Map<LocalDate, List<MealEvent>> occurrencesByDate = occurrencesByDate(tenantId, storedByDate, from, to);
+        if (occurrencesByDate.isEmpty()) return storedDays;
+
+        List<CalendarItem> days = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            CalendarItem stored = storedByDate.get(date);
+            List<MealEvent> storedEvents = stored != null && stored.getMealEvents() != null ? stored.getMealEvents() : List.of();
+            List<MealEvent> occurrences = occurrencesByDate.getOrDefault(date, List.of());
+
+            if (occurrences.isEmpty()) {
+                if (stored != null) days.add(stored);
+                continue;
+            }
+
+            CalendarItem day = new CalendarItem();
+            day.setId(stored != null ? stored.getId() : null);
+            day.setTenantId(tenantId);
+            day.setDate(date);
+            List<MealEvent> events = new ArrayList<>(storedEvents);
+            events.addAll(occurrences);
+            day.setMealEvents(events);
+            days.add(day);
+        }
+        return days;
+    }
+
+    public Optional<CalendarItem> withRules(String tenantId, Optional<CalendarItem> storedDay, LocalDate date) {
+        List<CalendarItem> days = withRules(tenantId, storedDay.map(List::of).orElse(List.of()), date, date);
+        return days.stream().findFirst();
+    }
+
+    // Only the meals the rules add to [from, to], storedDays being the stored days of that range
+    public List<MealEvent> ruleOccurrences(String tenantId, List<CalendarItem> storedDays, LocalDate from, LocalDate to) {
+        Map<LocalDate, CalendarItem> storedByDate = new HashMap<>();
+        storedDays.forEach(item -> storedByDate.put(item.getDate(), item));
+        return occurrencesByDate(tenantId, storedByDate, from, to).values().stream().flatMap(List::stream).toList();
+    }
+
+    // Days of [from, to] where a rule occurs on a meal type the stored day doesn't already have
+    private Map<LocalDate, List<MealEvent>> occurrencesByDate(String tenantId, Map<LocalDate, CalendarItem> storedByDate,
+                                                              LocalDate from, LocalDate to) {
+        List<MealRule> rules = findRules(tenantId).stream()
+                .filter(rule -> !rule.getStart().isAfter(to) && (rule.getUntil() == null || !rule.getUntil().isBefore(from)))
+                .toList();
+        Map<LocalDate, List<MealEvent>> occurrencesByDate = new HashMap<>();
+        if (rules.isEmpty()) return occurrencesByDate;
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            CalendarItem stored = storedByDate.get(date);
+            Set<MealType> plannedTypes = EnumSet.noneOf(MealType.class);
+            if (stored != null && stored.getMealEvents() != null) {
+                stored.getMealEvents().forEach(event -> plannedTypes.add(event.getMealType()));
+            }
+
+            List<MealEvent> occurrences = new ArrayList<>();
+            for (MealRule rule : rules) {
+                // add() is false when the day (or an earlier rule) already covers this meal type
+                if (rule.occursOn(date) && plannedTypes.add(rule.getMealType())) occurrences.add(rule.toMealEvent());
+            }
+            if (!occurrences.isEmpty()) occurrencesByDate.put(date, occurrences);
+        }
+        return occurrencesByDate;
+    }
+
+    private List<MealRule> findRules(String tenantId) {
+        try {
+            return mealRuleCache.get(tenantId, id -> Optional.of(mealRuleRepository.findByTenantId(id)))
+                    .orElse(List.of());
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
+    private void validateRule(MealRule rule) {
+        if (rule.getMealType() == null) throw new InvalidRequestException("A meal rule needs a mealType");
+        if (rule.getFrequency() == null) throw new InvalidRequestException("A meal rule needs a frequency");
+        if (rule.getStart() == null) throw new InvalidRequestException("A meal rule needs a start date");
+        if (rule.getInterval() < 1) throw new InvalidRequestException("The interval must be at least 1");
+        if (rule.getUntil() != null && rule.getUntil().isBefore(rule.getStart())) {
+            throw new InvalidRequestException("until must not be before start");
+        }
+        if (rule.getFrequency() == MealRule.Frequency.WEEKLY && (rule.getDaysOfWeek() == null || rule.getDaysOfWeek().isEmpty())) {
+            throw new InvalidRequestException("A weekly meal rule needs at least one day of the week");
+        }
+
+        boolean hasRecipe = rule.getRecipeId() != null && !rule.getRecipeId().isEmpty();
+        if (!hasRecipe && (rule.getEventName() == null || rule.getEventName().isEmpty())) {
+            throw new InvalidRequestException("Either recipeId or eventName must be provided");
+        }
+        if (hasRecipe && !recipeExistenceService.exists(rule.getRecipeId())) {
+            throw new InvalidRequestException("Recipe not found with id: " + rule.getRecipeId());
+        }
+    }
+}
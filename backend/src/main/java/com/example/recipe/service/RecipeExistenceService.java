@@ -0,0 +1,68 @@
+package com.example.recipe.service;
+
+import com.example.recipe.cache.RecipeCache;
+import com.example.recipe.exception.DatabaseException;
+import com.example.recipe.index.RecipeIdFilter;
+import com.example.recipe.repository.RecipeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/*
+ * "Do these recipes exist" checks for the write paths receiving recipe ids.
+ * Ids rejected by the Bloom filter definitely don't exist and ids already in the recipe cache
+ * definitely do, only the remaining ones are resolved in the database, with a single query for a list.
+ */
+@Service
+@RequiredArgsConstructor
+public class RecipeExistenceService {
+
+    private final RecipeRepository recipeRepository;
+    private final RecipeCache recipeCache;
+    private final RecipeIdFilter recipeIdFilter;
+
+    public boolean exists(String recipeId) {
+        if (recipeId == null || !recipeIdFilter.mightContain(recipeId)) return false;
+        if (recipeCache.containsLoaded(recipeId)) return true;
+
+        boolean exists;
+        try {
+            exists = recipeRepository.existsById(recipeId);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+        if (!exists) recipeIdFilter.recordFalsePositive();
+        return exists;
+    }
+
+    // False means the recipe definitely doesn't exist, without any query
+    public boolean mightExist(String recipeId) {
+        return recipeId != null && recipeIdFilter.mightContain(recipeId);
+    }
+
+    // Ids that match no recipe, in the order they were given (null and blank ids are reported as missing)
+    public Set<String> findMissing(Collection<String> recipeIds) {
+        Set<String> missing = new LinkedHashSet<>();
+        Set<String> toQuery = new HashSet<>();
+        for (String recipeId : recipeIds) {
+            if (recipeId == null || recipeId.isBlank() || !recipeIdFilter.mightContain(recipeId)) missing.add(recipeId);
+            else if (!recipeCache.containsLoaded(recipeId)) toQuery.add(recipeId);
+        }
+        if (toQuery.isEmpty()) return missing;
+
+        Set<String> existing;
+        try {
+            existing = recipeRepository.findExistingIds(toQuery);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+        for (String recipeId : recipeIds) {
+            if (toQuery.contains(recipeId) && !existing.contains(recipeId) && missing.add(recipeId)) {
+                recipeIdFilter.recordFalsePositive();
+            }
+        }
+        return missing;
+    }
+}
@@ -1,31 +1,47 @@
 package com.example.recipe.service;
 
+import com.example.recipe.cache.RecipeCache;
+import com.example.recipe.dto.CursorPage;
 import com.example.recipe.dto.RecipeDto;
 import com.example.recipe.dto.RecipeWithIngredientsDetailedDto;
-import com.example.recipe.dto.UserDto;
+import com.example.recipe.dto.UserRecipeLinkDto;
 import com.example.recipe.dto.lookup.IngredientDto;
 import com.example.recipe.entity.Recipe;
-import com.example.recipe.entity.User;
+import com.example.recipe.entity.SavedRecipe;
 import com.example.recipe.entity.lookup.Ingredient;
 import com.example.recipe.exception.DatabaseException;
+import com.example.recipe.index.RecipeIdFilter;
+import com.example.recipe.index.RecipeIngredientIndex;
+import com.example.recipe.index.RecipePlanningIndex;
+import com.example.recipe.index.RecipeSearchIndex;
 import com.example.recipe.exception.GenericException;
+import com.example.recipe.exception.InvalidCursorException;
 import com.example.recipe.exception.NoContentException;
 import com.example.recipe.exception.UserIsNotTheResourceOwnerException;
 import com.example.recipe.mapper.IngredientMapper;
 import com.example.recipe.mapper.RecipeMapper;
 import com.example.recipe.mapper.UserMapper;
 import com.example.recipe.model.*;
-import com.example.recipe.repository.IngredientRepository;
+import com.example.recipe.repository.PlannedGroceryRepository;
 import com.example.recipe.repository.RecipeRepository;
+import com.example.recipe.repository.SavedRecipeRepository;
 import com.example.recipe.repository.UserRepository;
+import com.example.recipe.repository.UserRepositoryCustom;
+import com.example.recipe.utils.CursorUtils;
 import com.example.recipe.utils.ReflectionUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Optional;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -39,67 +55,89 @@ public class RecipeService implements CrudService<RecipeDto> {
     private final UserService userService;
     private final UserMapper userMapper;
     private final UserRepository userRepository;
+    private final SavedRecipeRepository savedRecipeRepository;
     private final IngredientMapper ingredientMapper;
-    private final IngredientRepository ingredientRepository;
+    private final IngredientService ingredientService;
+    private final ObjectMapper objectMapper;
+    private final RecipeCache recipeCache;
+    private final RecipeIngredientIndex recipeIngredientIndex;
+    private final RecipeSearchIndex recipeSearchIndex;
+    private final RecipePlanningIndex recipePlanningIndex;
+    private final RecipeIdFilter recipeIdFilter;
+    private final PlannedGroceryRepository plannedGroceryRepository;
+
+    private static final int STREAM_FLUSH_EVERY = 100;
+    private static final int DEFAULT_IDEAS_LIMIT = 20;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final String SAVED_CURSOR_SEPARATOR = ":";
+    private static final Set<String> NOT_PATCHABLE_FIELDS = Set.of("id", "tenantId");
 
     public void CheckIfRecipeBelongsToUser(String recipeId){
         /* TODO when RBAC is setup, an admin should be allowed to access any recipe */
         var currentUserId = userService.getCurrentUserId();
-        Optional<Recipe> r = recipeRepository.findById(recipeId);
+        Optional<Recipe> r = findRecipe(recipeId);
         if(r.isEmpty()) throw new NoContentException("There is no recipe with id " + recipeId);
 
         var tenantId = r.get().getTenantId();
         if(!tenantId.equals(currentUserId)) throw new UserIsNotTheResourceOwnerException("UserId doesnt match the resource tenantId");
     }
 
+    /* Ids the Bloom filter rejects are answered without touching the cache or the database,
+       bots probing random ids mostly end here */
+    private Optional<Recipe> findRecipe(String id) {
+        if (!recipeIdFilter.mightContain(id)) return Optional.empty();
+
+        Optional<Recipe> recipe = recipeCache.get(id, recipeRepository::findById);
+        if (recipe.isEmpty()) recipeIdFilter.recordFalsePositive();
+        return recipe;
+    }
+
     public List<RecipeDto> fetchUsersRecipes(String tenantId) {
         // First, check if the user is allowed to access resources
         userService.CheckUserAllowedToAccessResource(tenantId);
 
-        // Fetch the user entity based on tenantId
-        User user = userRepository.findById(tenantId)
-                .orElseThrow(() -> new UserIsNotTheResourceOwnerException("User with this tenantId doesn't exist"));
-
-        // Get the list of recipe IDs the user has
-        List<String> recipesIds = user.getRecipesIds();
-
-        // Fetch all the recipes based on the IDs
-        List<Recipe> recipes = recipeRepository.findAllById(recipesIds);
-
-        // Filter the recipes based on the tenantId (tenantId should match the recipe's tenantId)
-        List<Recipe> filteredRecipes = recipes.stream()
-                .filter(recipe -> recipe.getTenantId().equals(tenantId))  // Ensure recipe's tenantId matches the provided tenantId
-                .toList();
-
-        // Map the filtered recipes to RecipeDto and return
-        return filteredRecipes.stream()
-                .map(recipeMapper::toDto)
-                .collect(Collectors.toList());
+        try {
+            // Recipes are queried by owner directly, neither the user document nor its recipesIds are needed
+            return recipeRepository.findCompactsByTenantId(tenantId)
+                    .stream()
+                    .map(recipeMapper::toCompactDto)
+                    .collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
     }
 
 
-    public UserDto addRecipeToUserRecipes(String userId, String recipeId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+    public CursorPage<RecipeDto> fetchUsersRecipesPage(String tenantId, Optional<String> cursor, Optional<Integer> size) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
 
-        user.getRecipesIds().add(recipeId);
-        userRepository.save(user);
-        return userMapper.toDto(user);
+        int pageSize = CursorUtils.pageSize(size);
+        try {
+            // One extra recipe is fetched to know whether there is a next page
+            List<Recipe> recipes = recipeRepository.findCompactsByTenantIdPage(tenantId, CursorUtils.decode(cursor), pageSize + 1);
+            return CursorPage.of(recipes, pageSize, Recipe::getId, recipeMapper::toCompactDto);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
     }
 
 
-    public UserDto removeRecipeOfUserRecipes(String userId, String recipeId) {
+    public UserRecipeLinkDto addRecipeToUserRecipes(String userId, String recipeId) {
+        // $addToSet, a recipe already in the list is left as is
+        if (!userRepository.addToRecipeList(userId, UserRepositoryCustom.RECIPES_IDS, recipeId)
+                && !userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found");
+        }
+        return new UserRecipeLinkDto(userId, recipeId, true);
+    }
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NoContentException("User not found"));
 
-        List<String> recipes = user.getRecipesIds();
-        if (recipes.contains(recipeId)) {
-            recipes.remove(recipeId); // Remove by value, not index
-            userRepository.save(user);
+    public UserRecipeLinkDto removeRecipeOfUserRecipes(String userId, String recipeId) {
+        if (!userRepository.removeFromRecipeList(userId, UserRepositoryCustom.RECIPES_IDS, recipeId)
+                && !userRepository.existsById(userId)) {
+            throw new NoContentException("User not found");
         }
-
-        return userMapper.toDto(user);
+        return new UserRecipeLinkDto(userId, recipeId, false);
     }
 
 
@@ -107,66 +145,144 @@ public class RecipeService implements CrudService<RecipeDto> {
         // First, check if the user is allowed to access resources
         userService.CheckUserAllowedToAccessResource(tenantId);
 
-        // Fetch the user entity based on tenantId
-        User user = userRepository.findById(tenantId)
-                .orElseThrow(() -> new UserIsNotTheResourceOwnerException("User with this tenantId doesn't exist"));
+        try {
+            // Saved recipes live in their own collection, most recently saved first
+            List<SavedRecipe> saved = savedRecipeRepository.findByUserIdOrderBySavedAtDesc(tenantId);
+            return findSavedRecipes(saved, tenantId);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
 
-        // Get the list of recipe IDs the user has
-        List<String> recipesIds = user.getSavedRecipesIds();
 
-        // Fetch all the recipes based on the IDs
-        List<Recipe> recipes = recipeRepository.findAllById(recipesIds);
+    public CursorPage<RecipeDto> fetchUsersSavedRecipesPage(String tenantId, Optional<String> cursor, Optional<Integer> size) {
+        userService.CheckUserAllowedToAccessResource(tenantId);
 
-        // Filter the recipes based on the tenantId (tenantId should match the recipe's tenantId)
-        List<Recipe> filteredRecipes = recipes.stream()
-                .filter(recipe -> recipe.getTenantId().equals(tenantId))  // Ensure recipe's tenantId matches the provided tenantId
-                .toList();
+        int pageSize = CursorUtils.pageSize(size);
+        // The cursor holds the (savedAt, _id) of the last entry of the previous page
+        Optional<String[]> after = CursorUtils.decode(cursor).map(c -> c.split(SAVED_CURSOR_SEPARATOR, 2));
+        try {
+            List<SavedRecipe> fetched = savedRecipeRepository.findByUserIdPage(
+                    tenantId,
+                    after.map(parts -> Instant.ofEpochMilli(Long.parseLong(parts[0]))),
+                    after.map(parts -> parts[1]),
+                    pageSize + 1);
+            CursorPage<SavedRecipe> savedPage = CursorPage.of(fetched, pageSize,
+                    sr -> sr.getSavedAt().toEpochMilli() + SAVED_CURSOR_SEPARATOR + sr.getId(),
+                    sr -> sr);
+            return new CursorPage<>(findSavedRecipes(savedPage.getItems(), tenantId), savedPage.getNextCursor());
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor.orElse(""));
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
 
-        // Map the filtered recipes to RecipeDto and return
-        return filteredRecipes.stream()
+    // A saved recipe that its owner turned private in the meantime is not returned anymore
+    private List<RecipeDto> findSavedRecipes(List<SavedRecipe> saved, String tenantId) {
+        if (saved.isEmpty()) return List.of();
+        Map<String, Recipe> recipesById = recipeRepository
+                .findAllById(saved.stream().map(SavedRecipe::getRecipeId).toList())
+                .stream()
+                .collect(Collectors.toMap(Recipe::getId, recipe -> recipe));
+
+        return saved.stream()
+                .map(sr -> recipesById.get(sr.getRecipeId()))
+                .filter(Objects::nonNull)
+                .filter(recipe -> recipe.isPublic() || tenantId.equals(recipe.getTenantId()))
                 .map(recipeMapper::toDto)
                 .collect(Collectors.toList());
     }
 
+    public long countSaves(String recipeId) {
+        try {
+            return savedRecipeRepository.countByRecipeId(recipeId);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
 
-    public List<RecipeDto> getAllWithFilters(Optional<RelativePrice> relativePrice, Optional<FoodOrigin> foodOrigin, Optional<MealType> mealType, Optional<Integer> limit) {
-        // Get all recipes from the database
-        List<Recipe> recipes = recipeRepository.findAllByIsPublicTrue();
+    /* Recipe ids ranked by how much of their ingredients the user already has, answered from the in-memory index */
+    public List<String> getIdeas(List<String> ingredients, Optional<Integer> limit) {
+        var currentUserId = userService.getCurrentUserId();
+        List<String> ingredientIds = ingredientService.resolveIds(ingredients);
+        int max = limit.filter(l -> l > 0).orElse(DEFAULT_IDEAS_LIMIT);
 
-        // Filter by relativePrice if present
-        if (relativePrice!= null && relativePrice.isPresent()) {
-            recipes = recipes.stream()
-                    .filter(recipe -> recipe.getRelativePrice() == relativePrice.get())
-                    .collect(Collectors.toList());
-        }
+        return recipeIngredientIndex.findByIngredients(ingredientIds, currentUserId, max)
+                .stream()
+                .map(RecipeIngredientIndex.Match::recipeId)
+                .collect(Collectors.toList());
+    }
 
-        // Filter by foodOrigin if present
-        if (foodOrigin!= null && foodOrigin.isPresent()) {
-            String origin = String.valueOf(foodOrigin.get()).toUpperCase();  // Convert to uppercase if needed
-            recipes = recipes.stream()
-                    .filter(recipe -> recipe.getFoodOrigins().stream()
-                            .anyMatch(food -> food.name().equalsIgnoreCase(origin))) // Compare enum values
+    /* Ranking happens in the in-memory index, mongo is only asked for the compacts of the returned page */
+    public List<RecipeDto> search(String text, Optional<RelativePrice> relativePrice, Optional<FoodOrigin> foodOrigin, Optional<MealType> mealType, Optional<Integer> limit) {
+        var currentUserId = userService.getCurrentUserId();
+        int max = limit.filter(l -> l > 0).orElse(DEFAULT_SEARCH_LIMIT);
+
+        List<String> rankedIds = recipeSearchIndex.search(text, relativePrice, foodOrigin, mealType, currentUserId, max)
+                .stream()
+                .map(RecipeSearchIndex.Hit::recipeId)
+                .toList();
+        if (rankedIds.isEmpty()) return List.of();
+
+        try {
+            Map<String, Recipe> recipesById = recipeRepository.findAllById(rankedIds)
+                    .stream()
+                    .collect(Collectors.toMap(Recipe::getId, recipe -> recipe));
+            return rankedIds.stream()
+                    .map(recipesById::get)
+                    .filter(Objects::nonNull)
+                    .map(recipeMapper::toCompactDto)
                     .collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
         }
+    }
 
-        // Filter by mealType if present
-        if (mealType!= null && mealType.isPresent()) {
-            String type = String.valueOf(mealType.get()).toUpperCase();  // Convert to uppercase if needed
-            recipes = recipes.stream()
-                    .filter(recipe -> recipe.getMealTypes().stream()
-                            .anyMatch(meal -> meal.name().equalsIgnoreCase(type))) // Compare enum values
+    public List<RecipeDto> getAllWithFilters(Optional<RelativePrice> relativePrice, Optional<FoodOrigin> foodOrigin, Optional<MealType> mealType, Optional<Integer> limit) {
+        try {
+            // Filtering and limit are done by MongoDB, only the matching recipes are loaded
+            return recipeRepository
+                    .findPublicWithFilters(
+                            relativePrice != null ? relativePrice : Optional.empty(),
+                            foodOrigin != null ? foodOrigin : Optional.empty(),
+                            mealType != null ? mealType : Optional.empty(),
+                            limit != null ? limit : Optional.empty())
+                    .stream()
+                    .map(recipeMapper::toCompactDto)
                     .collect(Collectors.toList());
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
         }
+    }
 
-        // Apply limit if present
-        Stream<Recipe> recipeStream = recipes.stream();
-        if (limit.isPresent() && limit.get() > 0) {
-            recipeStream = recipeStream.limit(limit.get());
+    public CursorPage<RecipeDto> getAllWithFiltersPage(Optional<RelativePrice> relativePrice, Optional<FoodOrigin> foodOrigin, Optional<MealType> mealType, Optional<String> cursor, Optional<Integer> size) {
+        int pageSize = CursorUtils.pageSize(size);
+        try {
+            List<Recipe> recipes = recipeRepository.findPublicWithFiltersPage(relativePrice, foodOrigin, mealType, CursorUtils.decode(cursor), pageSize + 1);
+            return CursorPage.of(recipes, pageSize, Recipe::getId, recipeMapper::toCompactDto);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
         }
+    }
 
-        return recipeStream
-                .map(recipeMapper::toCompactDto)
-                .collect(Collectors.toList());
+    public CursorPage<RecipeDto> getAllPage(Optional<String> cursor, Optional<Integer> size) {
+        return getPublicPage(cursor, size, false);
+    }
+
+    public CursorPage<RecipeDto> getAllCompactPage(Optional<String> cursor, Optional<Integer> size) {
+        return getPublicPage(cursor, size, true);
+    }
+
+    private CursorPage<RecipeDto> getPublicPage(Optional<String> cursor, Optional<Integer> size, boolean compact) {
+        int pageSize = CursorUtils.pageSize(size);
+        try {
+            Function<Recipe, RecipeDto> mapper = compact ? recipeMapper::toCompactDto : recipeMapper::toDto;
+            List<Recipe> recipes = recipeRepository.findPublicPage(CursorUtils.decode(cursor), pageSize + 1);
+            return CursorPage.of(recipes, pageSize, Recipe::getId, mapper);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
     }
 
     public List<RecipeDto> getAll() {
@@ -187,6 +303,33 @@ public class RecipeService implements CrudService<RecipeDto> {
 
     }
 
+    public void streamAll(OutputStream out) {
+        streamPublic(out, recipeRepository::streamPublic, recipeMapper::toDto);
+    }
+
+    public void streamAllCompact(OutputStream out) {
+        // Only the compact fields leave the database
+        streamPublic(out, recipeRepository::streamPublicCompacts, recipeMapper::toCompactDto);
+    }
+
+    /* Writes public recipes as NDJSON (one json object per line) straight from the mongo cursor,
+       only one recipe is held in memory at a time */
+    private void streamPublic(OutputStream out, Supplier<Stream<Recipe>> query, Function<Recipe, RecipeDto> mapper) {
+        try (Stream<Recipe> recipes = query.get()) {
+            int written = 0;
+            for (Recipe recipe : (Iterable<Recipe>) recipes::iterator) {
+                out.write(objectMapper.writeValueAsBytes(mapper.apply(recipe)));
+                out.write('\n');
+                if (++written % STREAM_FLUSH_EVERY == 0) out.flush();
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Streaming recipes to the client failed", e);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+    }
+
     public List<RecipeDto> getByIds(List<String> ids) {
         try {
             List<RecipeDto> recipes = recipeRepository
@@ -220,12 +363,39 @@ public class RecipeService implements CrudService<RecipeDto> {
     }
 
 
+    /* Compacts of the recipes visible to userId, keyed by id (unknown and private ones are left out).
+       Recipes already in the cache are reused, the others are read with a single projected $in */
+    public Map<String, RecipeDto> findVisibleCompactsByIds(Collection<String> ids, String userId) {
+        Map<String, RecipeDto> compacts = new HashMap<>();
+        List<String> toQuery = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            if (!recipeIdFilter.mightContain(id)) continue;
+            recipeCache.getIfLoaded(id).ifPresentOrElse(
+                    recipe -> putIfVisible(compacts, recipe, userId),
+                    () -> toQuery.add(id));
+        }
+
+        try {
+            recipeRepository.findCompactsByIds(toQuery).forEach(recipe -> putIfVisible(compacts, recipe, userId));
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        }
+        return compacts;
+    }
+
+    private void putIfVisible(Map<String, RecipeDto> compacts, Recipe recipe, String userId) {
+        if (recipe.isPublic() || userId.equals(recipe.getTenantId())) {
+            compacts.put(recipe.getId(), recipeMapper.toCompactDto(recipe));
+        }
+    }
+
+
     public RecipeDto getOneById(String id) {
         var currentUserId = userService.getCurrentUserId();
 
-        return recipeRepository
-                .findByIdAndIsPublicTrue(id)
-                .or(() -> recipeRepository.findByIdAndTenantId(id, currentUserId))
+        // Visibility is checked on the cached entity, a single load at most even for concurrent requests
+        return findRecipe(id)
+                .filter(recipe -> recipe.isPublic() || currentUserId.equals(recipe.getTenantId()))
                 .map(recipeMapper::toDto)
                 .orElseThrow(() -> new UserIsNotTheResourceOwnerException("The recipe is private"))
                 ;
@@ -235,36 +405,76 @@ public class RecipeService implements CrudService<RecipeDto> {
 
     public RecipeWithIngredientsDetailedDto getOneWithIngredientsDetailedById(String id) {
         try {
-            Recipe recipe = recipeRepository.findById(id)
+            Recipe recipe = findRecipe(id)
                     .orElseThrow(() -> new NoContentException("Recipe not found with ID: " + id));
 
-            RecipeDto recipeDto = recipeMapper.toDto(recipe);
-
-            // Enrich each RecipeIngredient with the full IngredientDto
+            // All the ingredients of the recipe are fetched with a single $in query
+            Map<String, IngredientDto> ingredientsById = findIngredientsById(List.of(recipe));
+            return toIngredientDetailedDto(recipe, ingredientsById);
 
-            List<RecipeIngredientDetailed> enrichedIngredients = recipeDto.getIngredients().stream()
-                    .map(ri -> {
-                        Ingredient ingredient = ingredientRepository.findById(ri.getIngredientId())
-                                .orElseThrow(() -> new NoContentException("Ingredient not found: " + ri.getIngredientId()));
-                        IngredientDto ingredientDto = ingredientMapper.toDto(ingredient); // map entity to DTO
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
+        } catch (Exception e) {
+            throw new GenericException(e.getMessage());
+        }
+    }
 
-                        RecipeIngredientDetailed detailed = new RecipeIngredientDetailed();
-                        detailed.setIngredient(ingredientDto);
-                        detailed.setAmount(ri.getAmount());
-                        return detailed;
-                    })
-                    .collect(Collectors.toList());
+    public List<RecipeWithIngredientsDetailedDto> getManyWithIngredientsDetailedByIds(List<String> ids) {
+        var currentUserId = userService.getCurrentUserId();
 
-            return recipeMapper.toIngredientDetailedDto(recipeDto, enrichedIngredients);
+        try {
+            // Same visibility rule as getOneById, other users' private recipes are left out
+            List<Recipe> recipes = recipeRepository.findAllById(ids).stream()
+                    .filter(recipe -> recipe.isPublic() || currentUserId.equals(recipe.getTenantId()))
+                    .toList();
+            if (recipes.isEmpty()) throw new NoContentException("No recipes found for the given IDs");
 
+            // One ingredient query shared by every recipe of the batch
+            Map<String, IngredientDto> ingredientsById = findIngredientsById(recipes);
+            return recipes.stream()
+                    .map(recipe -> toIngredientDetailedDto(recipe, ingredientsById))
+                    .collect(Collectors.toList());
 
         } catch (DataAccessException e) {
             throw new DatabaseException("Error accessing the database");
-        } catch (Exception e) {
-            throw new GenericException(e.getMessage());
         }
     }
 
+    private Map<String, IngredientDto> findIngredientsById(List<Recipe> recipes) {
+        Set<String> ingredientIds = recipes.stream()
+                .map(Recipe::getIngredients)
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .map(RecipeIngredient::getIngredientId)
+                .collect(Collectors.toSet());
+        if (ingredientIds.isEmpty()) return Map.of();
+
+        // Served from the ingredient cache, mongo is only hit for ids it doesn't know yet
+        return ingredientService.findAllByIds(ingredientIds)
+                .stream()
+                .collect(Collectors.toMap(Ingredient::getId, ingredientMapper::toDto));
+    }
+
+    private RecipeWithIngredientsDetailedDto toIngredientDetailedDto(Recipe recipe, Map<String, IngredientDto> ingredientsById) {
+        RecipeDto recipeDto = recipeMapper.toDto(recipe);
+        List<RecipeIngredient> ingredients = recipeDto.getIngredients() != null ? recipeDto.getIngredients() : List.of();
+
+        // Enrich each RecipeIngredient with the full IngredientDto
+        List<RecipeIngredientDetailed> enrichedIngredients = ingredients.stream()
+                .map(ri -> {
+                    IngredientDto ingredientDto = ingredientsById.get(ri.getIngredientId());
+                    if (ingredientDto == null) throw new NoContentException("Ingredient not found: " + ri.getIngredientId());
+
+                    RecipeIngredientDetailed detailed = new RecipeIngredientDetailed();
+                    detailed.setIngredient(ingredientDto);
+                    detailed.setAmount(ri.getAmount());
+                    return detailed;
+                })
+                .collect(Collectors.toList());
+
+        return recipeMapper.toIngredientDetailedDto(recipeDto, enrichedIngredients);
+    }
+
 
 
 
@@ -283,19 +493,26 @@ public class RecipeService implements CrudService<RecipeDto> {
     }*/
 
     public RecipeDto updatePartiallyById(String id, RecipeDto recipeDto) {
-        CheckIfRecipeBelongsToUser(id);
+        var currentUserId = userService.getCurrentUserId();
 
-        Optional<Recipe> existingRecipe = recipeRepository.findById(id);
-        if (existingRecipe.isEmpty()) {
-            throw new NoContentException("Recipe not found");
+        // Only the non-null fields of the dto are sent, the ownership check is part of the update filter
+        Map<String, Object> fields = ReflectionUtils.nonNullFields(recipeDto, Recipe.class, NOT_PATCHABLE_FIELDS);
+        try {
+            Recipe recipe = recipeRepository.setFieldsByIdAndTenantId(id, currentUserId, fields)
+                    .orElseThrow(() -> recipeRepository.existsById(id)
+                            ? new UserIsNotTheResourceOwnerException("UserId doesnt match the resource tenantId")
+                            : new NoContentException("Recipe not found"));
+
+            recipeCache.evict(id);
+            recipeIngredientIndex.upsert(recipe);
+            recipeSearchIndex.upsert(recipe);
+            recipePlanningIndex.upsert(recipe);
+            // Planned totals of the users who planned it were summed with the old ingredients
+            if (fields.containsKey("ingredients")) plannedGroceryRepository.markStaleByRecipe(id);
+            return recipeMapper.toDto(recipe);
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Error accessing the database");
         }
-
-        Recipe recipeToUpdate = existingRecipe.get();
-        // Using reflection to update non-null fields from recipeDto to recipeToUpdate
-        ReflectionUtils.updateNonNullFields(recipeDto, recipeToUpdate);
-
-        var recipe =  recipeRepository.save(recipeToUpdate);
-        return recipeMapper.toDto(recipe);
     }
 
     public RecipeDto createOne(RecipeDto recipeDto) {
@@ -306,6 +523,11 @@ public class RecipeService implements CrudService<RecipeDto> {
         var recipeEntity = recipeMapper.toEntity(recipeDto);
         recipeEntity.setTenantId(id);
         var recipe = recipeRepository.save(recipeEntity);
+        recipeIdFilter.add(recipe.getId());
+        recipeCache.evict(recipe.getId());
+        recipeIngredientIndex.upsert(recipe);
+        recipeSearchIndex.upsert(recipe);
+        recipePlanningIndex.upsert(recipe);
         return recipeMapper.toDto(recipe);
     }
 
@@ -314,6 +536,13 @@ public class RecipeService implements CrudService<RecipeDto> {
     public void deleteOneById(String id) {
         CheckIfRecipeBelongsToUser(id);
         recipeRepository.deleteById(id);
+        // Saves of a deleted recipe would keep being counted and listed
+        savedRecipeRepository.deleteByRecipeId(id);
+        plannedGroceryRepository.markStaleByRecipe(id);
+        recipeCache.evict(id);
+        recipeIngredientIndex.remove(id);
+        recipeSearchIndex.remove(id);
+        recipePlanningIndex.remove(id);
     }
 
 
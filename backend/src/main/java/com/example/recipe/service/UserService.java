@@ -1,24 +1,32 @@
 package com.example.recipe.service;
 
+import com.example.recipe.auth.AuthenticatedUser;
+import com.example.recipe.cache.UserTokenStateCache;
+import com.example.recipe.dto.GroceryOperationsResultDto;
 import com.example.recipe.dto.UserDto;
-import com.example.recipe.entity.Recipe;
+import com.example.recipe.dto.UserRecipeLinkDto;
+import com.example.recipe.entity.SavedRecipe;
 import com.example.recipe.entity.User;
+import com.example.recipe.exception.FieldDoesntExistException;
 import com.example.recipe.exception.GenericException;
 import com.example.recipe.exception.NoContentException;
 import com.example.recipe.exception.UserIsNotTheResourceOwnerException;
 import com.example.recipe.mapper.UserMapper;
 import com.example.recipe.model.Grocery;
-import com.example.recipe.repository.RecipeRepository;
+import com.example.recipe.model.GroceryOperation;
+import com.example.recipe.repository.SavedRecipeRepository;
 import com.example.recipe.repository.UserRepository;
+import com.example.recipe.repository.UserRepositoryCustom;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Optional;
+import java.time.Instant;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
@@ -30,12 +38,14 @@ public class UserService implements CrudService<UserDto>{
     private final UserRepository userRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
-    private final RecipeRepository recipeRepository;
+    private final SavedRecipeRepository savedRecipeRepository;
+    private final RecipeExistenceService recipeExistenceService;
+    private final UserTokenStateCache userTokenStateCache;
 
     public String getCurrentUserId(){
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.getPrincipal() instanceof User user) {
-            return user.getId();  // Get the actual user ID
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user) {
+            return user.id();  // Get the actual user ID, taken from the token
         }
         throw new RuntimeException("User not authenticated");
     }
@@ -48,41 +58,35 @@ public class UserService implements CrudService<UserDto>{
     }
 
 
-    public UserDto addRecipeIdToUser(String userId, String recipeId) {
+    public UserRecipeLinkDto addRecipeIdToUser(String userId, String recipeId) {
         CheckUserAllowedToAccessResource(userId);
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NoContentException("User not found"));
-
-        Recipe recipe = recipeRepository.findById(recipeId)
-                .orElseThrow(() -> new NoContentException("Recipe not found"));
+        if (!recipeExistenceService.exists(recipeId)) throw new NoContentException("Recipe not found");
 
-        List<String> recipesIds = user.getRecipesIds();
-        if (recipesIds.contains(recipeId)) {
+        if (!userRepository.addToRecipeList(userId, UserRepositoryCustom.RECIPES_IDS, recipeId)) {
+            if (!userRepository.existsById(userId)) throw new NoContentException("User not found");
             throw new GenericException("Recipe already added to user");
         }
-
-        recipesIds.add(recipeId);
-        user.setRecipesIds(recipesIds);
-
-        return userMapper.toDto(userRepository.save(user));
+        return new UserRecipeLinkDto(userId, recipeId, true);
     }
 
-    public UserDto removeRecipeIdFromUser(String userId, String recipeId) {
+    public UserRecipeLinkDto removeRecipeIdFromUser(String userId, String recipeId) {
         CheckUserAllowedToAccessResource(userId);
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NoContentException("User not found"));
-
-        List<String> recipesIds = user.getRecipesIds();
-        if (!recipesIds.contains(recipeId)) {
+        if (!userRepository.removeFromRecipeList(userId, UserRepositoryCustom.RECIPES_IDS, recipeId)) {
+            if (!userRepository.existsById(userId)) throw new NoContentException("User not found");
             throw new NoContentException("Recipe not found in user's list");
         }
+        return new UserRecipeLinkDto(userId, recipeId, false);
+    }
+
 
-        recipesIds.remove(recipeId);
-        user.setRecipesIds(recipesIds);
+    // Every token issued so far stops working, on the other instances once their cached state expires
+    public void revokeTokens(String userId) {
+        CheckUserAllowedToAccessResource(userId);
 
-        return userMapper.toDto(userRepository.save(user));
+        if (!userRepository.incrementTokenVersion(userId)) throw new NoContentException("User not found");
+        userTokenStateCache.evict(userId);
     }
 
 
@@ -91,56 +95,50 @@ public class UserService implements CrudService<UserDto>{
     public Boolean checkIfUserAlreadySavedRecipe(String userId, String recipeId) {
         CheckUserAllowedToAccessResource(userId);
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NoContentException("User not found"));
-
-        Recipe recipe = recipeRepository.findById(recipeId)
-                .orElseThrow(() -> new NoContentException("Recipe not found"));
+        // A recipe that doesn't exist can't have been saved
+        if (!recipeExistenceService.mightExist(recipeId)) return false;
+        return savedRecipeRepository.existsByUserIdAndRecipeId(userId, recipeId);
+    }
 
-        List<String> recipesIds = user.getSavedRecipesIds();
+    // Answers a whole page of the feed at once with one indexed query on (userId, recipeId)
+    public Map<String, Boolean> checkIfUserAlreadySavedRecipes(String userId, List<String> recipesIds) {
+        CheckUserAllowedToAccessResource(userId);
 
-        return recipesIds.contains(recipeId);
+        Set<String> saved = savedRecipeRepository.findByUserIdAndRecipeIdIn(userId, recipesIds)
+                .stream()
+                .map(SavedRecipe::getRecipeId)
+                .collect(Collectors.toSet());
+        Map<String, Boolean> result = new LinkedHashMap<>();
+        recipesIds.forEach(recipeId -> result.put(recipeId, saved.contains(recipeId)));
+        return result;
     }
 
-    public UserDto addRecipeIdToUserSaved(String userId, String recipeId) {
+    public UserRecipeLinkDto addRecipeIdToUserSaved(String userId, String recipeId) {
         CheckUserAllowedToAccessResource(userId);
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NoContentException("User not found"));
-
-        Recipe recipe = recipeRepository.findById(recipeId)
-                .orElseThrow(() -> new NoContentException("Recipe not found"));
+        if (!recipeExistenceService.exists(recipeId)) throw new NoContentException("Recipe not found");
 
-        List<String> recipesIds = user.getSavedRecipesIds();
-        if (recipesIds.contains(recipeId)) {
+        try {
+            // The unique (userId, recipeId) index is the duplicate check
+            savedRecipeRepository.insert(SavedRecipe.builder()
+                    .userId(userId)
+                    .recipeId(recipeId)
+                    .savedAt(Instant.now())
+                    .build());
+        } catch (DuplicateKeyException e) {
             throw new GenericException("User already saved this recipe");
         }
-
-        recipesIds.add(recipeId);
-        user.setSavedRecipesIds(recipesIds);
-
-        return userMapper.toDto(userRepository.save(user));
+        return new UserRecipeLinkDto(userId, recipeId, true);
     }
 
 
-
-
-
-    public UserDto removeRecipeIdFromUserSaved(String userId, String recipeId) {
+    public UserRecipeLinkDto removeRecipeIdFromUserSaved(String userId, String recipeId) {
         CheckUserAllowedToAccessResource(userId);
 
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NoContentException("User not found"));
-
-        List<String> recipesIds = user.getSavedRecipesIds();
-        if (!recipesIds.contains(recipeId)) {
+        if (savedRecipeRepository.deleteByUserIdAndRecipeId(userId, recipeId) == 0) {
             throw new NoContentException("Recipe not found in user saved list");
         }
-
-        recipesIds.remove(recipeId);
-        user.setSavedRecipesIds(recipesIds);
-
-        return userMapper.toDto(userRepository.save(user));
+        return new UserRecipeLinkDto(userId, recipeId, false);
     }
 
 
@@ -149,50 +147,69 @@ public class UserService implements CrudService<UserDto>{
         /* TODO need to ensure that the user to modify is request by the user itself  */
         CheckUserAllowedToAccessResource(id);
 
-        Optional<User> existingUser = userRepository.findById(id);
-        if (existingUser.isEmpty()) {
-            throw new NoContentException("User not found");
-        }
-
-        User userToUpdate = existingUser.get();
         List<String> recipesIds = userDto.getRecipesIds();
+        if (recipesIds == null) throw new FieldDoesntExistException("recipesIds is required");
 
-        for (String recipeId : recipesIds) {
-            Optional<Recipe> r = recipeRepository.findById(recipeId);
-            if (r.isEmpty()) {
-                log.error("One of the recipeId was not found");
-                throw new NoContentException("One of the recipeId was not found");
-            }
+        // All ids are checked at once instead of one findById per recipe
+        Set<String> missingIds = recipeExistenceService.findMissing(recipesIds);
+        if (!missingIds.isEmpty()) {
+            log.error("Recipe ids not found : {}", missingIds);
+            throw new NoContentException("One of the recipeId was not found");
         }
-        userToUpdate.setRecipesIds(recipesIds);
 
-        var user =  userRepository.save(userToUpdate);
+        // Only recipesIds is written, a whole document save would overwrite concurrent updates of the other fields
+        User user = userRepository.setFields(id, Map.of(UserRepositoryCustom.RECIPES_IDS, recipesIds))
+                .orElseThrow(() -> new NoContentException("User not found"));
         return userMapper.toDto(user);
     }
 
 
-    public Grocery getGroceryForUserWithId(String id) {
+    public UserDto updateGroceryForUserWithId(String id, Grocery updatedGrocery) {
         CheckUserAllowedToAccessResource(id);
 
-        return userRepository.findById(id)
-                .map(User::getGrocery)
-                .orElseThrow(() -> new NoContentException("User not found or grocery not set"));
+        // Only the grocery is written, like the item operations below
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(UserRepositoryCustom.GROCERY, updatedGrocery);
+        User user = userRepository.setFields(id, fields)
+                .orElseThrow(() -> new NoContentException("User not found"));
+        return userMapper.toDto(user);
     }
 
+    public void applyGroceryOperation(String id, GroceryOperation operation) {
+        CheckUserAllowedToAccessResource(id);
+        validateGroceryOperation(operation);
 
-    public UserDto updateGroceryForUserWithId(String id, Grocery updatedGrocery) {
+        if (!userRepository.applyGroceryOperation(id, operation)) {
+            if (!userRepository.existsById(id)) throw new NoContentException("User not found");
+            if (operation.getType() == GroceryOperation.Type.ADD) throw new GenericException("Item already in the grocery list");
+            throw new NoContentException("Item not found in the grocery list");
+        }
+    }
+
+
+    public GroceryOperationsResultDto applyGroceryOperations(String id, List<GroceryOperation> operations) {
         CheckUserAllowedToAccessResource(id);
+        operations.forEach(this::validateGroceryOperation);
 
-        Optional<User> existingUser = userRepository.findById(id);
-        if (existingUser.isEmpty()) {
+        int applied = userRepository.applyGroceryOperations(id, operations);
+        if (applied == 0 && !operations.isEmpty() && !userRepository.existsById(id)) {
             throw new NoContentException("User not found");
         }
-        User userToUpdate = existingUser.get();
-        // Using reflection to update non-null fields from userDto to userToUpdate
-        userToUpdate.setGrocery(updatedGrocery);
+        return new GroceryOperationsResultDto(operations.size(), applied);
+    }
 
-        var user =  userRepository.save(userToUpdate);
-        return userMapper.toDto(user);
+
+    private void validateGroceryOperation(GroceryOperation operation) {
+        if (operation == null || operation.getType() == null) throw new FieldDoesntExistException("Grocery operation type is required");
+        if (operation.getIngredientName() == null || operation.getIngredientName().isBlank()) {
+            throw new FieldDoesntExistException("Grocery operation ingredientName is required");
+        }
+        if (operation.getType() == GroceryOperation.Type.SET_BOUGHT && operation.getAlreadyBought() == null) {
+            throw new FieldDoesntExistException("alreadyBought is required to set an item as bought");
+        }
+        if (operation.getType() == GroceryOperation.Type.SET_QUANTITY && operation.getQuantity() == null) {
+            throw new FieldDoesntExistException("quantity is required to change the quantity of an item");
+        }
     }
 
     public UserDto getUserDetailed(){
@@ -201,7 +218,13 @@ public class UserService implements CrudService<UserDto>{
         if (user.isEmpty()) {
             throw new NoContentException("User not found");
         }
-        return userMapper.toDto(user.get());
+        UserDto userDto = userMapper.toDto(user.get());
+        // Newest first, as they used to be listed in the embedded array
+        userDto.setSavedRecipesIds(savedRecipeRepository.findByUserIdOrderBySavedAtDesc(currentUserId)
+                .stream()
+                .map(SavedRecipe::getRecipeId)
+                .toList());
+        return userDto;
     }
 
     @Override
@@ -233,13 +256,15 @@ public class UserService implements CrudService<UserDto>{
     public UserDto createOne(UserDto newDto) {
         String passwordHash = passwordEncoder.encode(newDto.getPassword());
         User user = userMapper.toEntity(newDto, passwordHash);
-        userRepository.save(user);
+        // insert, never save : an existing user (and its tokenVersion) must not be replaced
+        userRepository.insert(user);
         return newDto;
     }
 
     @Override
     public void deleteOneById(String id) {
         userRepository.deleteById(id);
+        userTokenStateCache.evict(id);
     }
 
 
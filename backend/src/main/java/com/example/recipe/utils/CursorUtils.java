@@ -0,0 +1,36 @@
+package com.example.recipe.utils;
+
+import com.example.recipe.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/* Opaque keyset cursor, wraps the _id of the last item of the previous page */
+public class CursorUtils {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    public static String encode(String lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Optional<String> decode(Optional<String> cursor) {
+        return cursor.filter(c -> !c.isBlank()).map(c -> {
+            try {
+                return new String(Base64.getUrlDecoder().decode(c), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidCursorException("Invalid cursor: " + c);
+            }
+        });
+    }
+
+    // Pagination is opt-in, a request without cursor nor size keeps returning the full list
+    public static boolean isPaged(Optional<String> cursor, Optional<Integer> size) {
+        return cursor.isPresent() || size.isPresent();
+    }
+
+    public static int pageSize(Optional<Integer> size) {
+        return size.filter(s -> s > 0).map(s -> Math.min(s, MAX_PAGE_SIZE)).orElse(DEFAULT_PAGE_SIZE);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.recipe.utils;
+
+import com.example.recipe.exception.InvalidRequestException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+public class DateRangeUtils {
+
+    // A quarter is the longest view served, both bounds included
+    public static final int MAX_RANGE_DAYS = 92;
+
+    public static void validate(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) throw new InvalidRequestException("from must not be after to");
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_RANGE_DAYS) {
+            throw new InvalidRequestException("The range can't be longer than " + MAX_RANGE_DAYS + " days");
+        }
+    }
+}
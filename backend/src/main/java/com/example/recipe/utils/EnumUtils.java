@@ -0,0 +1,17 @@
+package com.example.recipe.utils;
+
+import java.util.Optional;
+
+public class EnumUtils {
+
+    // Case insensitive, unknown values are ignored the same way a missing filter is
+    public static <E extends Enum<E>> Optional<E> parse(Optional<String> value, Class<E> type) {
+        return value.flatMap(v -> {
+            try {
+                return Optional.of(Enum.valueOf(type, v.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        });
+    }
+}
@@ -1,27 +1,70 @@
 package com.example.recipe.utils;
 
-import com.example.recipe.dto.RecipeDto;
-import com.example.recipe.entity.Recipe;
 import com.example.recipe.exception.GenericException;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ReflectionUtils {
-    public static <S,T>  void updateNonNullFields(S sourceDto, T targetEntity){
-        // Using reflection to update non-null fields from a sourceDto to an targetEntity
-        for (Field field : sourceDto.getClass().getDeclaredFields()) {
-            field.setAccessible(true);
-            try {
-                Object value = field.get(sourceDto);
-                if (value != null) {
-                    Field targetField = targetEntity.getClass().getDeclaredField(field.getName());
-                    targetField.setAccessible(true);
-                    targetField.set(targetEntity, value);
+
+    // One read handle per source field, resolved and checked against the target once per (source, target) pair
+    private record FieldAccessor(String name, boolean primitive, VarHandle source) {
+    }
+
+    private record ClassPair(Class<?> source, Class<?> target) {
+    }
+
+    private static final Map<ClassPair, List<FieldAccessor>> ACCESSORS = new ConcurrentHashMap<>();
+
+    /* Non-null fields of sourceDto keyed by field name (usable as a mongo $set). Every field of sourceDto must exist
+       on targetClass with an assignable type, otherwise the update is rejected.
+       Primitive fields are skipped since they can't tell "not sent" from their default value */
+    public static <S> Map<String, Object> nonNullFields(S sourceDto, Class<?> targetClass, Set<String> excludedFields) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (FieldAccessor accessor : accessorsFor(sourceDto.getClass(), targetClass)) {
+            if (accessor.primitive() || excludedFields.contains(accessor.name())) continue;
+            Object value = accessor.source().get(sourceDto);
+            if (value != null) {
+                fields.put(accessor.name(), value);
+            }
+        }
+        return fields;
+    }
+
+    private static List<FieldAccessor> accessorsFor(Class<?> sourceClass, Class<?> targetClass) {
+        return ACCESSORS.computeIfAbsent(new ClassPair(sourceClass, targetClass), ReflectionUtils::resolveAccessors);
+    }
+
+    private static List<FieldAccessor> resolveAccessors(ClassPair pair) {
+        try {
+            MethodHandles.Lookup sourceLookup = MethodHandles.privateLookupIn(pair.source(), MethodHandles.lookup());
+
+            List<FieldAccessor> accessors = new ArrayList<>();
+            for (Field field : pair.source().getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) continue;
+
+                Field targetField;
+                try {
+                    targetField = pair.target().getDeclaredField(field.getName());
+                } catch (NoSuchFieldException e) {
+                    throw new GenericException("Partial update failed, field could not be parsed");
                 }
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                throw new GenericException("Partial update failed, field could not be parsed");
+                if (!targetField.getType().isAssignableFrom(field.getType())) {
+                    throw new GenericException("Partial update failed, field could not be parsed");
+                }
+                accessors.add(new FieldAccessor(
+                        field.getName(),
+                        field.getType().isPrimitive(),
+                        sourceLookup.unreflectVarHandle(field)
+                ));
             }
+            return List.copyOf(accessors);
+        } catch (IllegalAccessException e) {
+            throw new GenericException("Partial update failed, field could not be parsed");
         }
     }
 }
-
@@ -0,0 +1,13 @@
+package com.example.recipe.utils;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+public class TextUtils {
+
+    // Lowercase and remove accents so "Crème" and "creme" compare equal
+    public static String fold(String text) {
+        String decomposed = Normalizer.normalize(text.trim().toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return decomposed.replaceAll("\\p{M}", "");
+    }
+}
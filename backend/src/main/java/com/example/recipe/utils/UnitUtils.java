@@ -0,0 +1,60 @@
+package com.example.recipe.utils;
+
+import com.example.recipe.model.Amount;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class UnitUtils {
+
+    public static final String GRAM = "g";
+    public static final String MILLILITER = "ml";
+    public static final String PIECE = "piece";
+
+    private record Conversion(String baseUnit, int factor) {
+    }
+
+    private static final Map<String, Conversion> CONVERSIONS = new HashMap<>();
+
+    static {
+        for (String unit : new String[]{"g", "gr", "gram", "grams", "gramme", "grammes"}) CONVERSIONS.put(unit, new Conversion(GRAM, 1));
+        for (String unit : new String[]{"kg", "kilo", "kilos", "kilogram", "kilograms", "kilogramme", "kilogrammes"}) CONVERSIONS.put(unit, new Conversion(GRAM, 1000));
+        for (String unit : new String[]{"ml", "milliliter", "milliliters", "millilitre", "millilitres"}) CONVERSIONS.put(unit, new Conversion(MILLILITER, 1));
+        CONVERSIONS.put("cl", new Conversion(MILLILITER, 10));
+        CONVERSIONS.put("dl", new Conversion(MILLILITER, 100));
+        for (String unit : new String[]{"l", "liter", "liters", "litre", "litres"}) CONVERSIONS.put(unit, new Conversion(MILLILITER, 1000));
+        for (String unit : new String[]{"", "pc", "pcs", "piece", "pieces", "pièce", "pièces", "unit", "units"}) CONVERSIONS.put(unit, new Conversion(PIECE, 1));
+    }
+
+    // Same quantity in its base unit (kg -> g, l/dl/cl -> ml, no unit -> piece), unknown units are only lowercased
+    public static Amount toBaseUnit(Amount amount) {
+        Amount base = new Amount();
+        if (amount == null) {
+            base.setUnit(PIECE);
+            return base;
+        }
+        String unit = amount.getUnit() == null ? "" : amount.getUnit().trim().toLowerCase(Locale.ROOT);
+        Conversion conversion = CONVERSIONS.get(unit);
+        base.setValue(conversion == null ? amount.getValue() : amount.getValue() * conversion.factor());
+        base.setUnit(conversion == null ? unit : conversion.baseUnit());
+        return base;
+    }
+
+    // 2000 g -> 2 kg, only for exact multiples since Amount values are integers
+    public static Amount toDisplayUnit(Amount base) {
+        Amount display = new Amount();
+        display.setValue(base.getValue());
+        display.setUnit(base.getUnit());
+        if (base.getValue() != 0 && base.getValue() % 1000 == 0) {
+            if (GRAM.equals(base.getUnit())) {
+                display.setValue(base.getValue() / 1000);
+                display.setUnit("kg");
+            } else if (MILLILITER.equals(base.getUnit())) {
+                display.setValue(base.getValue() / 1000);
+                display.setUnit("l");
+            }
+        }
+        return display;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.recipe.benchmark;
+
+import com.example.recipe.entity.CalendarItem;
+import com.example.recipe.entity.MealPlanMonth;
+import com.example.recipe.repository.CalendarItemRepository;
+import com.example.recipe.repository.CalendarItemRepositoryCustomImpl;
+import com.example.recipe.repository.CalendarStore;
+import com.example.recipe.repository.DayCalendarStore;
+import com.example.recipe.repository.MonthBucketCalendarStore;
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Compares the two calendar layouts on a copy of the real data, after MealPlanBucketMigration filled meal_plan_months.
+ * Not part of the application nor of the test run : started by hand against a database, e.g.
+ *   java -cp <test classpath> com.example.recipe.benchmark.CalendarStorageBenchmark mongodb://host:27017/recipe 50 20
+ * (arguments : connection string with the database, sampled users, rounds).
+ * Logs the document count, data size and index size of meal_plans and meal_plan_months, then the latency
+ * of month reads through each CalendarStore for a sample of users, on their most recent planned month.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class CalendarStorageBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final CalendarItemRepository calendarItemRepository;
+    private final int sampledUsers;
+    private final int rounds;
+
+    private record Sample(String tenantId, YearMonth month) {
+    }
+
+    public static void main(String[] args) {
+        String uri = args.length > 0 ? args[0] : "mongodb://localhost:27017/recipe";
+        int sampledUsers = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            MongoTemplate mongoTemplate = new MongoTemplate(client, new ConnectionString(uri).getDatabase());
+            CalendarItemRepository calendarItemRepository = new MongoRepositoryFactory(mongoTemplate).getRepository(
+                    CalendarItemRepository.class, RepositoryFragments.just(new CalendarItemRepositoryCustomImpl(mongoTemplate)));
+            new CalendarStorageBenchmark(mongoTemplate, calendarItemRepository, sampledUsers, rounds).run();
+        }
+    }
+
+    public void run() {
+        logCollectionStats(mongoTemplate.getCollectionName(CalendarItem.class));
+        logCollectionStats(mongoTemplate.getCollectionName(MealPlanMonth.class));
+
+        List<Sample> samples = sample();
+        if (samples.isEmpty()) {
+            log.info("Calendar storage benchmark skipped, no meal plans found");
+            return;
+        }
+        // Both stores are created here so the benchmark doesn't depend on application.calendar.storage
+        measure("day", new DayCalendarStore(calendarItemRepository), samples);
+        measure("month", new MonthBucketCalendarStore(mongoTemplate), samples);
+    }
+
+    private void logCollectionStats(String collection) {
+        Document stats = mongoTemplate.getDb().runCommand(new Document("collStats", collection));
+        log.info("Calendar storage benchmark [{}] documents={} dataSize={}B indexes={} totalIndexSize={}B",
+                collection,
+                stats.get("count"),
+                stats.get("size"),
+                stats.get("nindexes"),
+                stats.get("totalIndexSize"));
+    }
+
+    private List<Sample> sample() {
+        List<String> tenantIds = mongoTemplate.findDistinct(new Query(), "tenantId", CalendarItem.class, String.class);
+        List<Sample> samples = new ArrayList<>();
+        for (String tenantId : tenantIds.subList(0, Math.min(sampledUsers, tenantIds.size()))) {
+            Query latest = new Query(Criteria.where("tenantId").is(tenantId))
+                    .with(Sort.by(Sort.Direction.DESC, "date"))
+                    .limit(1);
+            CalendarItem item = mongoTemplate.findOne(latest, CalendarItem.class);
+            if (item != null && item.getDate() != null) samples.add(new Sample(tenantId, YearMonth.from(item.getDate())));
+        }
+        return samples;
+    }
+
+    private void measure(String layout, CalendarStore store, List<Sample> samples) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) samples.forEach(sample -> readMonth(store, sample));
+
+        long[] latencies = new long[samples.size() * rounds];
+        int days = 0;
+        int n = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (Sample sample : samples) {
+                long start = System.nanoTime();
+                days += readMonth(store, sample);
+                latencies[n++] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(latencies);
+        log.info("Calendar storage benchmark [{}] month reads={} days read={} mean={}us p50={}us p95={}us p99={}us",
+                layout,
+                latencies.length,
+                days,
+                Arrays.stream(latencies).sum() / latencies.length / 1000,
+                percentile(latencies, 0.50) / 1000,
+                percentile(latencies, 0.95) / 1000,
+                percentile(latencies, 0.99) / 1000);
+    }
+
+    private static int readMonth(CalendarStore store, Sample sample) {
+        LocalDate from = sample.month().atDay(1);
+        LocalDate to = sample.month().atEndOfMonth();
+        return store.findRange(sample.tenantId(), from, to).size();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.recipe.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private SingleFlightCache<String> cache(int maxEntries, Duration ttl) {
+        return new SingleFlightCache<>("test", maxEntries, ttl, new SimpleMeterRegistry(), now::get);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        SingleFlightCache<String> cache = cache(10, null);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Optional<String>>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("a", id -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(release);
+                return Optional.of("value");
+            })));
+            assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> cache.get("a", id -> {
+                    loads.incrementAndGet();
+                    return Optional.of("other");
+                })));
+            }
+            release.countDown();
+
+            for (Future<Optional<String>> result : results) {
+                assertEquals(Optional.of("value"), result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void absentValuesAreNotCached() {
+        SingleFlightCache<String> cache = cache(10, null);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("a", id -> { loads.incrementAndGet(); return Optional.empty(); });
+        cache.get("a", id -> { loads.incrementAndGet(); return Optional.empty(); });
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void failedLoadsAreNotCached() {
+        SingleFlightCache<String> cache = cache(10, null);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("a", id -> { throw new IllegalStateException(); }));
+
+        assertEquals(Optional.of("value"), cache.get("a", id -> Optional.of("value")));
+    }
+
+    @Test
+    void evictForcesAReload() {
+        SingleFlightCache<String> cache = cache(10, null);
+        cache.get("a", id -> Optional.of("old"));
+
+        cache.evict("a");
+
+        assertEquals(Optional.empty(), cache.getIfLoaded("a"));
+        assertEquals(Optional.of("new"), cache.get("a", id -> Optional.of("new")));
+    }
+
+    @Test
+    void leastRecentlyUsedIsDroppedFirst() {
+        SingleFlightCache<String> cache = cache(2, null);
+        cache.get("a", id -> Optional.of("a"));
+        cache.get("b", id -> Optional.of("b"));
+        cache.get("a", id -> Optional.of("reloaded"));
+
+        cache.get("c", id -> Optional.of("c"));
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsLoaded("a"));
+        assertFalse(cache.containsLoaded("b"));
+        assertTrue(cache.containsLoaded("c"));
+    }
+
+    @Test
+    void evictAndReloadChurnDoesNotPushOutOtherEntries() {
+        SingleFlightCache<String> cache = cache(2, null);
+        cache.get("a", id -> Optional.of("a"));
+        cache.get("b", id -> Optional.of("b"));
+
+        for (int i = 0; i < 1000; i++) {
+            cache.evict("b");
+            cache.get("b", id -> Optional.of("b"));
+        }
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.containsLoaded("a"));
+        assertTrue(cache.containsLoaded("b"));
+    }
+
+    @Test
+    void valuesOlderThanTheTtlAreReloaded() {
+        SingleFlightCache<String> cache = cache(10, Duration.ofSeconds(30));
+        cache.get("a", id -> Optional.of("old"));
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertEquals(Optional.of("old"), cache.get("a", id -> Optional.of("new")));
+
+        now.addAndGet(Duration.ofSeconds(25).toNanos());
+        assertEquals(Optional.empty(), cache.getIfLoaded("a"));
+        assertEquals(Optional.of("new"), cache.get("a", id -> Optional.of("new")));
+        assertEquals(1, cache.size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
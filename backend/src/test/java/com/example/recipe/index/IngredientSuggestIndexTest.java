@@ -0,0 +1,70 @@
+package com.example.recipe.index;
+
+import com.example.recipe.entity.lookup.Ingredient;
+import com.example.recipe.model.IngredientType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngredientSuggestIndexTest {
+
+    private static final IngredientSuggestIndex INDEX = IngredientSuggestIndex.build(List.of(
+            ingredient("Tomate", IngredientType.VEGETABLE),
+            ingredient("Tomme", IngredientType.DAIRY),
+            ingredient("Pomme", IngredientType.FRUIT),
+            ingredient("Pomme de terre", IngredientType.CARB),
+            ingredient("Carotte", IngredientType.VEGETABLE),
+            ingredient("Huile d'olive", IngredientType.OIL),
+            ingredient("Crème fraîche", IngredientType.DAIRY)));
+
+    private static Ingredient ingredient(String name, IngredientType type) {
+        Ingredient ingredient = new Ingredient();
+        ingredient.setName(name);
+        ingredient.setType(type);
+        return ingredient;
+    }
+
+    private static List<String> suggest(String prefix) {
+        return INDEX.suggest(prefix, Optional.empty(), 10).stream().map(Ingredient::getName).toList();
+    }
+
+    @Test
+    void exactPrefixesComeFirstShortestNameFirst() {
+        // "pom" is one edit away from "tom", the exact prefixes still rank above it
+        assertEquals(List.of("Tomme", "Tomate", "Pomme", "Pomme de terre"), suggest("tom"));
+    }
+
+    @Test
+    void everyWordOfTheNameIsAPrefixAndAccentsAreIgnored() {
+        assertEquals(List.of("Huile d'olive"), suggest("olive"));
+        assertEquals(List.of("Crème fraîche"), suggest("CREME"));
+    }
+
+    @Test
+    void oneTypoIsTolerated() {
+        assertEquals(List.of("Carotte"), suggest("carpt"));
+        assertEquals(List.of("Carotte"), suggest("carote"));
+    }
+
+    @Test
+    void allowedEditsGrowWithTheInputLength() {
+        // Up to 2 letters the input has to match exactly
+        assertTrue(suggest("tp").isEmpty());
+        // Up to 5 letters a single edit is allowed, two are too many
+        assertTrue(suggest("cxrpt").isEmpty());
+        // From 6 letters two edits are allowed
+        assertEquals(List.of("Carotte"), suggest("cxrptt"));
+    }
+
+    @Test
+    void typeAndLimitAreApplied() {
+        assertEquals(List.of("Pomme de terre"),
+                INDEX.suggest("pomme", Optional.of(IngredientType.CARB), 10).stream().map(Ingredient::getName).toList());
+        assertEquals(List.of("Tomme"),
+                INDEX.suggest("tom", Optional.empty(), 1).stream().map(Ingredient::getName).toList());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.recipe.index;
+
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.model.RecipeIngredient;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeIngredientIndexTest {
+
+    private static Recipe recipe(String id, String tenantId, boolean isPublic, String... ingredientIds) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setTenantId(tenantId);
+        recipe.setPublic(isPublic);
+        List<RecipeIngredient> ingredients = new ArrayList<>();
+        for (String ingredientId : ingredientIds) {
+            RecipeIngredient ingredient = new RecipeIngredient();
+            ingredient.setIngredientId(ingredientId);
+            ingredients.add(ingredient);
+        }
+        recipe.setIngredients(ingredients);
+        return recipe;
+    }
+
+    private static List<String> ids(List<RecipeIngredientIndex.Match> matches) {
+        return matches.stream().map(RecipeIngredientIndex.Match::recipeId).toList();
+    }
+
+    @Test
+    void bestCoverageComesFirstThenFewestMissingIngredients() {
+        RecipeIngredientIndex index = new RecipeIngredientIndex(null);
+        index.upsert(recipe("half", "other", true, "egg", "flour"));
+        index.upsert(recipe("full-small", "other", true, "egg"));
+        index.upsert(recipe("full-large", "other", true, "egg", "milk"));
+        index.upsert(recipe("half-large", "other", true, "egg", "milk", "flour", "sugar"));
+        index.upsert(recipe("unrelated", "other", true, "rice"));
+
+        List<RecipeIngredientIndex.Match> matches = index.findByIngredients(Set.of("egg", "milk"), "me", 10);
+
+        assertEquals(List.of("full-large", "full-small", "half", "half-large"), ids(matches));
+        assertEquals(2, matches.get(0).matchedIngredients());
+        assertEquals(2, matches.get(3).missingIngredients());
+    }
+
+    @Test
+    void limitKeepsTheBestMatches() {
+        RecipeIngredientIndex index = new RecipeIngredientIndex(null);
+        index.upsert(recipe("a", "other", true, "egg", "flour", "sugar"));
+        index.upsert(recipe("b", "other", true, "egg"));
+        index.upsert(recipe("c", "other", true, "egg", "flour"));
+
+        assertEquals(List.of("b", "c"), ids(index.findByIngredients(Set.of("egg"), "me", 2)));
+    }
+
+    @Test
+    void privateRecipesOfOtherUsersAreLeftOut() {
+        RecipeIngredientIndex index = new RecipeIngredientIndex(null);
+        index.upsert(recipe("mine", "me", false, "egg"));
+        index.upsert(recipe("theirs", "other", false, "egg"));
+        index.upsert(recipe("public", "other", true, "egg", "milk"));
+
+        assertEquals(List.of("mine", "public"), ids(index.findByIngredients(Set.of("egg"), "me", 10)));
+    }
+
+    @Test
+    void updatedAndRemovedRecipesAreReflected() {
+        RecipeIngredientIndex index = new RecipeIngredientIndex(null);
+        index.upsert(recipe("a", "other", true, "egg"));
+        index.upsert(recipe("b", "other", true, "egg"));
+
+        index.upsert(recipe("a", "other", true, "rice"));
+        index.remove("b");
+        assertTrue(index.findByIngredients(Set.of("egg"), "me", 10).isEmpty());
+
+        // The freed ordinal is reused without leaking the removed recipe's ingredients
+        index.upsert(recipe("c", "other", true, "milk"));
+        assertEquals(List.of("c"), ids(index.findByIngredients(Set.of("milk", "egg"), "me", 10)));
+        assertEquals(List.of("a"), ids(index.findByIngredients(Set.of("rice"), "me", 10)));
+    }
+}
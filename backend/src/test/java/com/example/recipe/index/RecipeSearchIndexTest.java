@@ -0,0 +1,117 @@
+package com.example.recipe.index;
+
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.repository.RecipeRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeSearchIndexTest {
+
+    private static Recipe recipe(String id, String name, String description, String... steps) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setName(name);
+        recipe.setDescription(description);
+        recipe.setSteps(List.of(steps));
+        recipe.setPublic(true);
+        recipe.setTenantId("other");
+        return recipe;
+    }
+
+    private static List<String> search(RecipeSearchIndex index, String text) {
+        return index.search(text, Optional.empty(), Optional.empty(), Optional.empty(), "me", 10)
+                .stream()
+                .map(RecipeSearchIndex.Hit::recipeId)
+                .toList();
+    }
+
+    @Test
+    void nameMatchesRankAboveBodyMatches() {
+        RecipeSearchIndex index = new RecipeSearchIndex(null);
+        index.upsert(recipe("body", "Summer salad", "A salad with fresh tomato"));
+        index.upsert(recipe("name", "Tomato salad", "A fresh summer salad"));
+        index.upsert(recipe("none", "Pancakes", "Sweet breakfast"));
+
+        assertEquals(List.of("name", "body"), search(index, "tomato"));
+    }
+
+    @Test
+    void rarerTermsWeighMore() {
+        RecipeSearchIndex index = new RecipeSearchIndex(null);
+        index.upsert(recipe("common", "Soup", "onion broth"));
+        index.upsert(recipe("rare", "Soup", "saffron broth"));
+        index.upsert(recipe("other1", "Tart", "onion pastry"));
+        index.upsert(recipe("other2", "Quiche", "onion cream"));
+
+        // Both match one term of the query, saffron is in a single recipe so its idf wins
+        assertEquals("rare", search(index, "onion saffron").get(0));
+    }
+
+    @Test
+    void shorterDocumentsRankAboveLongerOnesAtEqualFrequency() {
+        RecipeSearchIndex index = new RecipeSearchIndex(null);
+        index.upsert(recipe("long", "Stew", "beef slowly cooked with carrots potatoes onions garlic and red wine"));
+        index.upsert(recipe("short", "Stew", "beef carrots"));
+
+        assertEquals(List.of("short", "long"), search(index, "beef"));
+    }
+
+    @Test
+    void accentsAndCaseAreIgnored() {
+        RecipeSearchIndex index = new RecipeSearchIndex(null);
+        index.upsert(recipe("a", "Crème Brûlée", "Dessert"));
+
+        assertEquals(List.of("a"), search(index, "creme BRULEE"));
+    }
+
+    @Test
+    void updatedAndDeletedRecipesLeaveTheResults() {
+        RecipeSearchIndex index = new RecipeSearchIndex(null);
+        index.upsert(recipe("a", "Lemon tart", "Sweet"));
+        index.upsert(recipe("b", "Lemon cake", "Sweet"));
+        index.upsert(recipe("c", "Lemon chicken", "Savory"));
+
+        index.upsert(recipe("a", "Apple tart", "Sweet"));
+        index.remove("b");
+
+        assertEquals(List.of("c"), search(index, "lemon"));
+        assertEquals(List.of("a"), search(index, "apple"));
+        assertTrue(search(index, "cake").isEmpty());
+    }
+
+    @Test
+    void rebuildDropsRecipesDeletedElsewhere() {
+        // Only streamAllWithFields is called by build, it returns what is currently in the database
+        List<Recipe> stored = List.of(recipe("kept", "Lemon tart", "Sweet"));
+        RecipeRepository repository = (RecipeRepository) Proxy.newProxyInstance(
+                RecipeRepository.class.getClassLoader(),
+                new Class<?>[]{RecipeRepository.class},
+                (proxy, method, args) -> stored.stream());
+        RecipeSearchIndex index = new RecipeSearchIndex(repository);
+        index.upsert(recipe("deleted", "Lemon cake", "Sweet"));
+
+        index.build();
+
+        assertEquals(List.of("kept"), search(index, "lemon"));
+    }
+
+    @Test
+    void privateRecipesOfOtherUsersAreLeftOut() {
+        RecipeSearchIndex index = new RecipeSearchIndex(null);
+        Recipe theirs = recipe("theirs", "Curry", "Spicy");
+        theirs.setPublic(false);
+        Recipe mine = recipe("mine", "Curry", "Mild");
+        mine.setPublic(false);
+        mine.setTenantId("me");
+        index.upsert(theirs);
+        index.upsert(mine);
+
+        assertEquals(List.of("mine"), search(index, "curry"));
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.recipe.planner;
+
+import com.example.recipe.index.RecipePlanningIndex.PlannableRecipe;
+import com.example.recipe.model.MealType;
+import com.example.recipe.model.RelativePrice;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MealPlanSearchTest {
+
+    private static final long SEED = 42;
+
+    private static PlannableRecipe recipe(String id, int[] ingredients, MealType... mealTypes) {
+        int mask = 0;
+        for (MealType mealType : mealTypes) mask |= 1 << mealType.ordinal();
+        return new PlannableRecipe(id, "tenant", false, mask, 0, RelativePrice.values()[0], ingredients);
+    }
+
+    private static BitSet all(List<PlannableRecipe> recipes) {
+        BitSet selectable = new BitSet();
+        selectable.set(0, recipes.size());
+        return selectable;
+    }
+
+    private static List<MealPlanSearch.Slot> lunches(int days) {
+        List<MealPlanSearch.Slot> slots = new ArrayList<>();
+        for (int day = 0; day < days; day++) slots.add(new MealPlanSearch.Slot(day, MealType.LUNCH));
+        return slots;
+    }
+
+    private static MealPlanSearch.Result search(MealPlanSearch.Problem problem) {
+        MealPlanSearch search = new MealPlanSearch(2, 50);
+        try {
+            return search.search(problem, SEED, System.nanoTime() + 50_000_000);
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    @Test
+    void recipesDontComeBackWithinTheNoRepeatWindow() {
+        List<PlannableRecipe> recipes = List.of(
+                recipe("a", new int[]{0}, MealType.LUNCH),
+                recipe("b", new int[]{0}, MealType.LUNCH),
+                recipe("c", new int[]{0}, MealType.LUNCH));
+        List<MealPlanSearch.Slot> slots = lunches(9);
+
+        MealPlanSearch.Result result = search(new MealPlanSearch.Problem(recipes, all(recipes), 1, 9, slots, List.of(), 3));
+
+        assertEquals(0, result.emptySlots());
+        int[] plan = result.recipeBySlot();
+        for (int i = 0; i < plan.length; i++) {
+            for (int j = i + 1; j < Math.min(plan.length, i + 3); j++) {
+                assertTrue(plan[i] != plan[j], "days " + i + " and " + j);
+            }
+        }
+    }
+
+    @Test
+    void mealsPlannedBeforeTheRangeCountForTheNoRepeatWindow() {
+        List<PlannableRecipe> recipes = List.of(
+                recipe("a", new int[]{0}, MealType.LUNCH),
+                recipe("b", new int[]{1}, MealType.LUNCH));
+        // "a" eaten the day before the range, with 2 days of no repeat it can't be planned on day 0
+        List<MealPlanSearch.FixedMeal> fixed = List.of(new MealPlanSearch.FixedMeal(-1, 0));
+
+        MealPlanSearch.Result result = search(new MealPlanSearch.Problem(recipes, all(recipes), 2, 1, lunches(1), fixed, 2));
+
+        assertEquals(1, result.recipeBySlot()[0]);
+        // A meal outside the range doesn't add to the ingredients of the plan
+        assertEquals(1, result.distinctIngredients());
+    }
+
+    @Test
+    void slotsOnlyTakeRecipesFittingTheirMealTypeAndSelectable() {
+        List<PlannableRecipe> recipes = List.of(
+                recipe("dinner", new int[]{0}, MealType.DINNER),
+                recipe("lunch", new int[]{1}, MealType.LUNCH),
+                recipe("filtered out", new int[]{2}, MealType.BREAKFAST));
+        BitSet selectable = new BitSet();
+        selectable.set(0, 2);
+        List<MealPlanSearch.Slot> slots = List.of(
+                new MealPlanSearch.Slot(0, MealType.LUNCH),
+                new MealPlanSearch.Slot(0, MealType.DINNER),
+                new MealPlanSearch.Slot(0, MealType.BREAKFAST));
+
+        MealPlanSearch.Result result = search(new MealPlanSearch.Problem(recipes, selectable, 3, 1, slots, List.of(), 1));
+
+        assertEquals(1, result.recipeBySlot()[0]);
+        assertEquals(0, result.recipeBySlot()[1]);
+        assertEquals(-1, result.recipeBySlot()[2]);
+        assertEquals(1, result.emptySlots());
+    }
+
+    @Test
+    void recipesSharingIngredientsBeatRecipesWithoutIngredients() {
+        List<PlannableRecipe> recipes = List.of(
+                recipe("planned", new int[]{0, 1, 2}, MealType.DINNER),
+                recipe("empty", new int[]{}, MealType.LUNCH),
+                recipe("sharing", new int[]{0, 1, 2}, MealType.LUNCH));
+        BitSet selectable = new BitSet();
+        selectable.set(1, 3);
+        List<MealPlanSearch.FixedMeal> fixed = List.of(new MealPlanSearch.FixedMeal(0, 0));
+
+        MealPlanSearch.Result result = search(new MealPlanSearch.Problem(recipes, selectable, 3, 1, lunches(1), fixed, 1));
+
+        assertEquals(2, result.recipeBySlot()[0]);
+        assertEquals(3, result.sharedUses());
+        assertEquals(3, result.distinctIngredients());
+    }
+
+    @Test
+    void aPassedDeadlineStillReturnsACompletePlan() {
+        List<PlannableRecipe> recipes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) recipes.add(recipe("r" + i, new int[]{i % 50, (i * 7) % 50}, MealType.LUNCH));
+        List<MealPlanSearch.Slot> slots = lunches(60);
+
+        MealPlanSearch search = new MealPlanSearch(2, 50);
+        long start = System.nanoTime();
+        MealPlanSearch.Result result;
+        try {
+            result = search.search(new MealPlanSearch.Problem(recipes, all(recipes), 50, 60, slots, List.of(), 7), SEED, start);
+        } finally {
+            search.shutdown();
+        }
+
+        assertEquals(0, result.emptySlots());
+        assertTrue(System.nanoTime() - start < 1_000_000_000L, "search overran a passed deadline");
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.recipe.service;
+
+import com.example.recipe.dto.MealEvent;
+import com.example.recipe.entity.Recipe;
+import com.example.recipe.model.Amount;
+import com.example.recipe.model.RecipeIngredient;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroceryServiceTest {
+
+    private static RecipeIngredient ingredient(String ingredientId, int value, String unit) {
+        Amount amount = new Amount();
+        amount.setValue(value);
+        amount.setUnit(unit);
+        RecipeIngredient ingredient = new RecipeIngredient();
+        ingredient.setIngredientId(ingredientId);
+        ingredient.setAmount(amount);
+        return ingredient;
+    }
+
+    private static Recipe recipe(String id, RecipeIngredient... ingredients) {
+        Recipe recipe = new Recipe();
+        recipe.setId(id);
+        recipe.setIngredients(new ArrayList<>(List.of(ingredients)));
+        return recipe;
+    }
+
+    private static MealEvent meal(String recipeId) {
+        MealEvent event = new MealEvent();
+        event.setRecipeId(recipeId);
+        return event;
+    }
+
+    @Test
+    void countsEachPlannedRecipeAndSkipsMealsWithoutRecipe() {
+        Map<String, Integer> planned = GroceryService.countPlannedRecipes(
+                List.of(meal("pasta"), meal("salad"), meal("pasta"), meal(null), meal(" ")));
+
+        assertEquals(Map.of("pasta", 2, "salad", 1), planned);
+        assertTrue(GroceryService.countPlannedRecipes(null).isEmpty());
+    }
+
+    @Test
+    void recipePlannedTwiceNeedsItsIngredientsTwice() {
+        Map<String, Map<String, Integer>> totals = GroceryService.sumIngredients(
+                List.of(recipe("pasta", ingredient("tomato", 200, "g"), ingredient("basil", 1, ""))),
+                Map.of("pasta", 2));
+
+        assertEquals(Map.of("tomato", Map.of("g", 400), "basil", Map.of("piece", 2)), totals);
+    }
+
+    @Test
+    void sumsConvertibleUnitsAcrossRecipes() {
+        Map<String, Map<String, Integer>> totals = GroceryService.sumIngredients(
+                List.of(recipe("pasta", ingredient("tomato", 1, "kg"), ingredient("milk", 25, "cl")),
+                        recipe("soup", ingredient("tomato", 500, "g"), ingredient("milk", 1, "l"))),
+                Map.of("pasta", 1, "soup", 1));
+
+        assertEquals(Map.of("tomato", Map.of("g", 1500), "milk", Map.of("ml", 1250)), totals);
+    }
+
+    @Test
+    void unknownUnitsStayApartFromTheBaseUnit() {
+        Map<String, Map<String, Integer>> totals = GroceryService.sumIngredients(
+                List.of(recipe("cake", ingredient("sugar", 100, "g"), ingredient("sugar", 2, "Tbsp")),
+                        recipe("tea", ingredient("sugar", 1, "tbsp"))),
+                Map.of("cake", 1, "tea", 3));
+
+        assertEquals(Map.of("sugar", Map.of("g", 100, "tbsp", 5)), totals);
+    }
+
+    @Test
+    void negativeTimesRemoveIngredientsAndUnplannedRecipesAddNothing() {
+        Map<String, Map<String, Integer>> totals = GroceryService.sumIngredients(
+                List.of(recipe("pasta", ingredient("tomato", 200, "g")),
+                        recipe("salad", ingredient("lettuce", 1, null))),
+                Map.of("pasta", -1));
+
+        assertEquals(Map.of("tomato", Map.of("g", -200), "lettuce", Map.of("piece", 0)), totals);
+    }
+}
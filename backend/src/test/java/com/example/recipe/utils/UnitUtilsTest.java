@@ -0,0 +1,52 @@
+package com.example.recipe.utils;
+
+import com.example.recipe.model.Amount;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UnitUtilsTest {
+
+    private static Amount amount(int value, String unit) {
+        Amount amount = new Amount();
+        amount.setValue(value);
+        amount.setUnit(unit);
+        return amount;
+    }
+
+    @Test
+    void convertsKnownUnitsToTheirBaseUnit() {
+        assertEquals(amount(1500, "g"), UnitUtils.toBaseUnit(amount(1500, "g")));
+        assertEquals(amount(2000, "g"), UnitUtils.toBaseUnit(amount(2, " KG ")));
+        assertEquals(amount(250, "ml"), UnitUtils.toBaseUnit(amount(25, "cl")));
+        assertEquals(amount(300, "ml"), UnitUtils.toBaseUnit(amount(3, "dl")));
+        assertEquals(amount(1000, "ml"), UnitUtils.toBaseUnit(amount(1, "Litre")));
+        assertEquals(amount(4, "piece"), UnitUtils.toBaseUnit(amount(4, "pièces")));
+    }
+
+    @Test
+    void missingAmountOrUnitIsCountedInPieces() {
+        assertEquals(amount(0, "piece"), UnitUtils.toBaseUnit(null));
+        assertEquals(amount(3, "piece"), UnitUtils.toBaseUnit(amount(3, null)));
+        assertEquals(amount(3, "piece"), UnitUtils.toBaseUnit(amount(3, "")));
+    }
+
+    @Test
+    void unknownUnitsAreKeptLowercased() {
+        assertEquals(amount(2, "tbsp"), UnitUtils.toBaseUnit(amount(2, "TBSP")));
+        assertEquals(amount(1, "pinch"), UnitUtils.toBaseUnit(amount(1, " Pinch")));
+    }
+
+    @Test
+    void displaysExactThousandsInKilogramsAndLiters() {
+        assertEquals(amount(2, "kg"), UnitUtils.toDisplayUnit(amount(2000, "g")));
+        assertEquals(amount(3, "l"), UnitUtils.toDisplayUnit(amount(3000, "ml")));
+    }
+
+    @Test
+    void keepsOtherAmountsInTheirBaseUnit() {
+        assertEquals(amount(1500, "g"), UnitUtils.toDisplayUnit(amount(1500, "g")));
+        assertEquals(amount(0, "ml"), UnitUtils.toDisplayUnit(amount(0, "ml")));
+        assertEquals(amount(2000, "piece"), UnitUtils.toDisplayUnit(amount(2000, "piece")));
+    }
+}